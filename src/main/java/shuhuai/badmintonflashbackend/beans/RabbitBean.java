@@ -2,8 +2,9 @@ package shuhuai.badmintonflashbackend.beans;
 
 import org.aopalliance.aop.Advice;
 import org.springframework.amqp.AmqpRejectAndDontRequeueException;
-import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
@@ -15,10 +16,14 @@ import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainer
 import org.springframework.context.annotation.Bean;
 
 import org.springframework.context.annotation.Configuration;
+import shuhuai.badmintonflashbackend.config.ReserveConsumerConfig;
+import shuhuai.badmintonflashbackend.config.ReserveShardConfig;
 import shuhuai.badmintonflashbackend.constant.MqNames;
 import shuhuai.badmintonflashbackend.mq.ReservePublishCallbackHandler;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -28,36 +33,35 @@ public class RabbitBean {
         return new DirectExchange(MqNames.RESERVE_EXCHANGE);
     }
 
-    @Bean
-    public Queue reserveQueue() {
-        Map<String, Object> args = new HashMap<>();
-        args.put("x-dead-letter-exchange", MqNames.RESERVE_DLX_EXCHANGE);
-        args.put("x-dead-letter-routing-key", MqNames.RESERVE_DLQ_ROUTING_KEY);
-        return new Queue(MqNames.RESERVE_QUEUE, true, false, false, args);
-    }
-
-    @Bean
-    public Binding reserveBinding() {
-        return BindingBuilder.bind(reserveQueue())
-                .to(reserveExchange())
-                .with(MqNames.RESERVE_ROUTING_KEY);
-    }
-
     @Bean
     public DirectExchange reserveDlxExchange() {
         return new DirectExchange(MqNames.RESERVE_DLX_EXCHANGE);
     }
 
+    /**
+     * 按分片声明主队列、死信队列及其绑定，同一 slotId 始终路由到同一分片以保证顺序
+     * 主队列开启单活消费者，多实例部署时同一分片也只有一个消费者在投递
+     */
     @Bean
-    public Queue reserveDlq() {
-        return new Queue(MqNames.RESERVE_DLQ, true);
-    }
-
-    @Bean
-    public Binding reserveDlqBinding() {
-        return BindingBuilder.bind(reserveDlq())
-                .to(reserveDlxExchange())
-                .with(MqNames.RESERVE_DLQ_ROUTING_KEY);
+    public Declarables reserveShardDeclarables(ReserveShardConfig shardConfig) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (int shard = 0; shard < shardConfig.getCount(); shard++) {
+            Map<String, Object> args = new HashMap<>();
+            args.put("x-dead-letter-exchange", MqNames.RESERVE_DLX_EXCHANGE);
+            args.put("x-dead-letter-routing-key", MqNames.reserveDlqRoutingKey(shard));
+            args.put("x-single-active-consumer", true);
+            Queue queue = new Queue(MqNames.reserveQueue(shard), true, false, false, args);
+            Queue dlq = new Queue(MqNames.reserveDlq(shard), true);
+            declarables.add(queue);
+            declarables.add(dlq);
+            declarables.add(BindingBuilder.bind(queue)
+                    .to(reserveExchange())
+                    .with(MqNames.reserveRoutingKey(shard)));
+            declarables.add(BindingBuilder.bind(dlq)
+                    .to(reserveDlxExchange())
+                    .with(MqNames.reserveDlqRoutingKey(shard)));
+        }
+        return new Declarables(declarables);
     }
 
     @Bean
@@ -82,6 +86,29 @@ public class RabbitBean {
             ConnectionFactory cf,
             SimpleRabbitListenerContainerFactoryConfigurer configurer,
             Jackson2JsonMessageConverter conv) {
+        return newListenerContainerFactory(cf, configurer, conv);
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory reserveBatchListenerContainerFactory(
+            ConnectionFactory cf,
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            Jackson2JsonMessageConverter conv,
+            ReserveConsumerConfig consumerConfig) {
+        SimpleRabbitListenerContainerFactory factory = newListenerContainerFactory(cf, configurer, conv);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(consumerConfig.getBatchSize());
+        factory.setReceiveTimeout(consumerConfig.getReceiveTimeout());
+        // prefetch 不小于批大小，否则凑不满一批
+        factory.setPrefetchCount(Math.max(consumerConfig.getBatchSize(), 250));
+        return factory;
+    }
+
+    private SimpleRabbitListenerContainerFactory newListenerContainerFactory(
+            ConnectionFactory cf,
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            Jackson2JsonMessageConverter conv) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         configurer.configure(factory, cf); // 继承 boot 的并发、ack 等配置
         factory.setMessageConverter(conv);
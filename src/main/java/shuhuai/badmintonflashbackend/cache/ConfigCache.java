@@ -0,0 +1,108 @@
+package shuhuai.badmintonflashbackend.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.mapper.IConfigMapper;
+
+/**
+ * 配置项进程内快照
+ * 读取只访问 volatile 引用；本实例更新配置提交后整体重载并广播，其他实例收到后重载；
+ * 另有固定间隔兜底轮询，广播丢失时陈旧时间有上限。
+ */
+@Slf4j
+@Component
+public class ConfigCache {
+    private static final String CHANGED = "changed";
+
+    private final IConfigMapper configMapper;
+    private final RedissonClient redisson;
+    private volatile ConfigSnapshot snapshot;
+    private RTopic topic;
+    private int messageListenerId = -1;
+    private int statusListenerId = -1;
+
+    public ConfigCache(IConfigMapper configMapper, RedissonClient redisson) {
+        this.configMapper = configMapper;
+        this.redisson = redisson;
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+        topic = redisson.getTopic(RedisKeys.configChannel(), StringCodec.INSTANCE);
+        messageListenerId = topic.addListener(String.class, (channel, message) -> reloadQuietly());
+        // 重新订阅期间的广播可能已丢失，主动重载一次
+        statusListenerId = topic.addListener(new BaseStatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                reloadQuietly();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (topic != null) {
+            topic.removeListener(messageListenerId, statusListenerId);
+        }
+    }
+
+    public ConfigSnapshot get() {
+        return snapshot;
+    }
+
+    /**
+     * 配置写入后调用：有事务时在提交后重载并广播，否则立即执行
+     */
+    public void refreshAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refreshAndPublish();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refreshAndPublish();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.configCache.refreshIntervalMs:30000}",
+            initialDelayString = "${app.configCache.refreshIntervalMs:30000}")
+    public void pollRefresh() {
+        reloadQuietly();
+    }
+
+    private void refreshAndPublish() {
+        reload();
+        try {
+            topic.publish(CHANGED);
+        } catch (Exception e) {
+            // 其他实例由兜底轮询追上
+            log.warn("配置变更广播失败 error={}", e.getMessage());
+        }
+    }
+
+    private void reload() {
+        snapshot = ConfigSnapshot.of(configMapper.selectList(null));
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // 保留旧快照
+            log.warn("配置快照重载失败 error={}", e.getMessage());
+        }
+    }
+}
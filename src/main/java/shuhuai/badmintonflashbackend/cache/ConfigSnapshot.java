@@ -0,0 +1,67 @@
+package shuhuai.badmintonflashbackend.cache;
+
+import shuhuai.badmintonflashbackend.enm.ConfigKey;
+import shuhuai.badmintonflashbackend.entity.Config;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 全部配置项的不可变快照，构造时一次性解析；缺失或无法解析的类型化字段为 null
+ */
+public record ConfigSnapshot(Map<ConfigKey, String> values, Integer warmupMinute, Integer payTimeoutMinute,
+                             BigDecimal payAmount, LocalTime generateTimeSlotTime, Integer courtCount,
+                             String courtNameFormat) {
+    public static ConfigSnapshot of(List<Config> configs) {
+        Map<ConfigKey, String> values = new EnumMap<>(ConfigKey.class);
+        for (Config config : configs) {
+            if (config != null && config.getConfigKey() != null && config.getValue() != null) {
+                values.put(config.getConfigKey(), config.getValue());
+            }
+        }
+        return new ConfigSnapshot(
+                Collections.unmodifiableMap(values),
+                parseInt(values.get(ConfigKey.WARMUP_MINUTE)),
+                parseInt(values.get(ConfigKey.PAY_TIMEOUT_MINUTE)),
+                parseDecimal(values.get(ConfigKey.PAY_AMOUNT)),
+                parseTime(values.get(ConfigKey.GENERATE_TIME_SLOT_TIME)),
+                parseInt(values.get(ConfigKey.COURT_COUNT)),
+                emptyToNull(values.get(ConfigKey.COURT_NAME_FORMAT)));
+    }
+
+    public String value(ConfigKey configKey) {
+        return values.get(configKey);
+    }
+
+    private static Integer parseInt(String value) {
+        try {
+            return value == null ? null : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static BigDecimal parseDecimal(String value) {
+        try {
+            return value == null ? null : new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static LocalTime parseTime(String value) {
+        try {
+            return value == null ? null : LocalTime.parse(value);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,103 @@
+package shuhuai.badmintonflashbackend.cache;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.config.ReserveRateLimitConfig;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地令牌桶预筛，每个实例独立
+ * 桶与 Redis 中的桶同容量、同周期，Redis 拒绝时调用方归还本地令牌，本地只记 Redis 放行过的尝试：
+ * 本实例内已经超限的键在全局必然超限，直接拒绝，不访问 Redis。
+ * 桶为 Bucket4j 本地无锁实现；条目闲置超过一个周期时桶已补满，删除不影响判定。
+ * 键数达到上限时先清理闲置条目，仍然超限就不再新建，直接交给 Redis 判定。
+ */
+@Component
+public class LocalRateLimiter {
+    private static final long SWEEP_INTERVAL_MS = 1000L;
+
+    private final ReserveRateLimitConfig rateLimitConfig;
+    private final ConcurrentHashMap<String, Entry> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Bandwidth> bandwidths = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepMillis = new AtomicLong();
+
+    public LocalRateLimiter(ReserveRateLimitConfig rateLimitConfig) {
+        this.rateLimitConfig = rateLimitConfig;
+    }
+
+    /**
+     * 取一个本地令牌
+     *
+     * @return 本地已超限时返回 false；未启用、不限或键数已满时返回 true
+     */
+    public boolean tryConsume(String key, long capacity, long periodMs) {
+        if (!Boolean.TRUE.equals(rateLimitConfig.getLocalEnabled()) || capacity <= 0 || periodMs <= 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = buckets.get(key);
+        if (entry == null) {
+            if (buckets.size() >= rateLimitConfig.getLocalMaxEntries()) {
+                sweep(now);
+                if (buckets.size() >= rateLimitConfig.getLocalMaxEntries()) {
+                    return true;
+                }
+            }
+            entry = buckets.computeIfAbsent(key, k -> new Entry(
+                    Bucket.builder().addLimit(bandwidth(capacity, periodMs)).build(), periodMs));
+        }
+        entry.lastAccessMillis = now;
+        return entry.bucket.tryConsume(1);
+    }
+
+    /**
+     * 归还一个本地令牌，用于 Redis 拒绝或后续维度拒绝时撤销本次扣减
+     */
+    public void refund(String key) {
+        if (!Boolean.TRUE.equals(rateLimitConfig.getLocalEnabled())) {
+            return;
+        }
+        Entry entry = buckets.get(key);
+        if (entry != null) {
+            entry.bucket.addTokens(1);
+        }
+    }
+
+    /**
+     * 同一容量、周期的限额配置只构建一次
+     */
+    private Bandwidth bandwidth(long capacity, long periodMs) {
+        // 容量与周期都远小于 2^32，拼成一个 long 作为缓存键
+        long cacheKey = (capacity << 32) | periodMs;
+        return bandwidths.computeIfAbsent(cacheKey, k -> Bandwidth.builder()
+                .capacity(capacity)
+                .refillGreedy(capacity, Duration.ofMillis(periodMs))
+                .build());
+    }
+
+    /**
+     * 删除闲置超过一个周期的条目，同一时间只有一个线程执行，且至少间隔一秒
+     */
+    private void sweep(long now) {
+        long next = nextSweepMillis.get();
+        if (now < next || !nextSweepMillis.compareAndSet(next, now + SWEEP_INTERVAL_MS)) {
+            return;
+        }
+        buckets.entrySet().removeIf(e -> now - e.getValue().lastAccessMillis > e.getValue().periodMs);
+    }
+
+    private static final class Entry {
+        private final Bucket bucket;
+        private final long periodMs;
+        private volatile long lastAccessMillis;
+
+        private Entry(Bucket bucket, long periodMs) {
+            this.bucket = bucket;
+            this.periodMs = periodMs;
+        }
+    }
+}
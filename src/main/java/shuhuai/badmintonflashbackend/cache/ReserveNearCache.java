@@ -0,0 +1,444 @@
+package shuhuai.badmintonflashbackend.cache;
+
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.config.ReserveNearCacheConfig;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
+import shuhuai.badmintonflashbackend.utils.DateTimes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * 闸门、slot→session、slot 售罄状态的本地近缓存
+ * 闸门与 slot→session 一天只变几次，读多写极少：读走 volatile 快照无锁，写时复制；
+ * 开闸/关闸、预热、slot 重建时通过 Redis 频道广播失效，各实例收到后删除本地条目，下次读取时回源 Redis；
+ * 准点开闸时直接广播开闸，各实例收到后把本地闸门置为已开，不再回源。
+ * 售罄状态是按 slotId 索引的位图，抢占失败或落库时置位，归还库存时广播清除；
+ * 清除时递增 epoch，置位方带上访问 Redis 前取到的 epoch，期间有过清除则不置位。
+ * 缓存只用于快速拒绝和浏览接口，预约脚本内仍以 Redis 为准做最终校验。
+ */
+@Slf4j
+@Component
+public class ReserveNearCache {
+    private static final String GATE_PREFIX = "gate:";
+    private static final String SLOTS_PREFIX = "slots:";
+    private static final String AVAILABLE_PREFIX = "available:";
+    private static final String OPEN_PREFIX = "open:";
+    private static final String GATE_OPEN = "1";
+
+    private final RedissonClient redisson;
+    private final ReserveNearCacheConfig nearCacheConfig;
+    private final ISlotStockService slotStockService;
+    private final IntMap gates = new IntMap();
+    private final IntMap slotSessions = new IntMap();
+    private final SoldOutBits soldOut = new SoldOutBits();
+    private final AtomicLong soldOutEpoch = new AtomicLong();
+    private RTopic topic;
+    private int messageListenerId = -1;
+    private int statusListenerId = -1;
+
+    public ReserveNearCache(RedissonClient redisson, ReserveNearCacheConfig nearCacheConfig,
+                            ISlotStockService slotStockService) {
+        this.redisson = redisson;
+        this.nearCacheConfig = nearCacheConfig;
+        this.slotStockService = slotStockService;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        topic = redisson.getTopic(RedisKeys.reserveCacheChannel(), StringCodec.INSTANCE);
+        messageListenerId = topic.addListener(String.class, (channel, message) -> onMessage(message));
+        // 断线重连后重新订阅期间的广播可能已丢失，整体清空本地缓存
+        statusListenerId = topic.addListener(new BaseStatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                clear();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (topic != null) {
+            topic.removeListener(messageListenerId, statusListenerId);
+        }
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(nearCacheConfig.getEnabled());
+    }
+
+    /**
+     * 场次闸门是否已开
+     */
+    public boolean isGateOpen(Integer sessionId) {
+        if (!isEnabled()) {
+            return loadGateOpen(sessionId);
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = gates.get(sessionId);
+        if (entry != null && entry.expireAt() > now) {
+            return entry.value() == 1;
+        }
+        long version = gates.version();
+        boolean open = loadGateOpen(sessionId);
+        long expireAt = open ? endOfTodayMillis(now) : now + nearCacheConfig.getClosedGateTtlMs();
+        gates.putIfVersion(sessionId, new Entry(open ? 1 : 0, expireAt), version);
+        return open;
+    }
+
+    /**
+     * slot 所属场次，未预热时返回 null（不做负缓存）
+     */
+    public Integer getSlotSession(Integer slotId) {
+        if (!isEnabled()) {
+            return loadSlotSession(slotId);
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = slotSessions.get(slotId);
+        if (entry != null && entry.expireAt() > now) {
+            return entry.value();
+        }
+        long version = slotSessions.version();
+        Integer sessionId = loadSlotSession(slotId);
+        if (sessionId != null) {
+            slotSessions.putIfVersion(slotId, new Entry(sessionId, endOfTodayMillis(now)), version);
+        }
+        return sessionId;
+    }
+
+    /**
+     * 预热完成后直接写入本实例缓存，其他实例按需回源
+     */
+    public void putSlotSessions(Collection<Integer> slotIds, Integer sessionId) {
+        if (!isEnabled() || slotIds == null || slotIds.isEmpty() || sessionId == null) {
+            return;
+        }
+        long expireAt = endOfTodayMillis(System.currentTimeMillis());
+        slotSessions.putAll(slotIds, new Entry(sessionId, expireAt));
+    }
+
+    /**
+     * 本实例是否已知 slot 售罄
+     */
+    public boolean isSoldOut(Integer slotId) {
+        return isEnabled() && slotId != null && slotId >= 0 && soldOut.get(slotId);
+    }
+
+    /**
+     * 售罄标记的版本号，在读取 Redis 库存前取出，置位时传给 {@link #markSoldOut(Integer, long)}
+     */
+    public long soldOutEpoch() {
+        return soldOutEpoch.get();
+    }
+
+    /**
+     * 标记 slot 售罄，只影响本实例；其他实例各自在第一次抢占失败时置位
+     * 取 epoch 之后若有归还库存清除过标记，说明这次“售罄”已过时，撤销置位；
+     * 清除方先递增 epoch 再清位，两边交错时最多多清一次，不会把过时的售罄留在本地。
+     */
+    public void markSoldOut(Integer slotId, long epoch) {
+        if (!isEnabled() || slotId == null || slotId < 0) {
+            return;
+        }
+        soldOut.set(slotId);
+        if (soldOutEpoch.get() != epoch) {
+            soldOut.clear(slotId);
+        }
+    }
+
+    /**
+     * 归还库存后广播，各实例清除售罄标记
+     */
+    public void publishSlotAvailable(Integer slotId) {
+        if (slotId == null || slotId < 0) {
+            return;
+        }
+        soldOutEpoch.incrementAndGet();
+        soldOut.clear(slotId);
+        publish(AVAILABLE_PREFIX + slotId);
+    }
+
+    /**
+     * 批量归还库存后一次广播
+     */
+    public void publishSlotsAvailable(Collection<Integer> slotIds) {
+        if (slotIds == null || slotIds.isEmpty()) {
+            return;
+        }
+        clearSoldOut(slotIds);
+        publish(AVAILABLE_PREFIX + slotIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    /**
+     * 闸门变化（创建、开闸、删除）后广播失效
+     */
+    public void publishGateChanged(Integer sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        gates.remove(sessionId);
+        publish(GATE_PREFIX + sessionId);
+    }
+
+    /**
+     * 闸门已开：本实例直接置为已开并广播，各实例无需回源 Redis
+     */
+    public void publishGateOpened(Integer sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        markGateOpen(sessionId);
+        publish(OPEN_PREFIX + sessionId);
+    }
+
+    /**
+     * 只把本实例的闸门置为已开
+     */
+    public void markGateOpen(Integer sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        gates.put(sessionId, new Entry(1, endOfTodayMillis(now)));
+    }
+
+    /**
+     * slot 被删除或重建后广播失效
+     */
+    public void publishSlotsChanged(Collection<Integer> slotIds) {
+        if (slotIds == null || slotIds.isEmpty()) {
+            return;
+        }
+        slotSessions.removeAll(slotIds);
+        clearSoldOut(slotIds);
+        publish(SLOTS_PREFIX + slotIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    private void publish(String message) {
+        try {
+            topic.publish(message);
+        } catch (Exception e) {
+            // 广播失败时其他实例最多在未开闸 TTL 或当日结束后自愈，预约脚本仍以 Redis 为准
+            log.warn("本地近缓存失效广播失败 message={}, error={}", message, e.getMessage());
+        }
+    }
+
+    private void onMessage(String message) {
+        if (message == null) {
+            return;
+        }
+        try {
+            if (message.startsWith(OPEN_PREFIX)) {
+                markGateOpen(Integer.parseInt(message.substring(OPEN_PREFIX.length())));
+            } else if (message.startsWith(GATE_PREFIX)) {
+                gates.remove(Integer.parseInt(message.substring(GATE_PREFIX.length())));
+            } else if (message.startsWith(SLOTS_PREFIX)) {
+                List<Integer> slotIds = parseIds(message.substring(SLOTS_PREFIX.length()));
+                slotSessions.removeAll(slotIds);
+                clearSoldOut(slotIds);
+            } else if (message.startsWith(AVAILABLE_PREFIX)) {
+                clearSoldOut(parseIds(message.substring(AVAILABLE_PREFIX.length())));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("无法解析本地近缓存失效广播 message={}", message);
+        }
+    }
+
+    private static List<Integer> parseIds(String joined) {
+        List<Integer> ids = new ArrayList<>();
+        for (String id : joined.split(",")) {
+            ids.add(Integer.parseInt(id));
+        }
+        return ids;
+    }
+
+    private void clear() {
+        gates.clear();
+        slotSessions.clear();
+        soldOutEpoch.incrementAndGet();
+        soldOut.clearAll();
+    }
+
+    private void clearSoldOut(Collection<Integer> slotIds) {
+        soldOutEpoch.incrementAndGet();
+        for (Integer slotId : slotIds) {
+            if (slotId != null && slotId >= 0) {
+                soldOut.clear(slotId);
+            }
+        }
+    }
+
+    private boolean loadGateOpen(Integer sessionId) {
+        return GATE_OPEN.equals(redisson.<String>getBucket(RedisKeys.gateKey(sessionId), StringCodec.INSTANCE).get());
+    }
+
+    private Integer loadSlotSession(Integer slotId) {
+        return slotStockService.getSlotSession(slotId);
+    }
+
+    private static long endOfTodayMillis(long now) {
+        return now + DateTimes.ttlToEndOfTodaySeconds() * 1000L;
+    }
+
+    private record Entry(int value, long expireAt) {
+    }
+
+    /**
+     * int 键写时复制 map：读取无锁；写入加锁复制，并顺带清掉已过期条目。
+     * version 在每次删除时递增，回源期间发生失效的结果不再写回，避免把旧值重新放进缓存。
+     */
+    private static final class IntMap {
+        private volatile IntObjectHashMap<Entry> snapshot = new IntObjectHashMap<>();
+        private volatile long version;
+
+        Entry get(int key) {
+            return snapshot.get(key);
+        }
+
+        long version() {
+            return version;
+        }
+
+        synchronized void putIfVersion(int key, Entry entry, long expectedVersion) {
+            if (version != expectedVersion) {
+                return;
+            }
+            IntObjectHashMap<Entry> copy = copyLive();
+            copy.put(key, entry);
+            snapshot = copy;
+        }
+
+        /**
+         * 强制写入，同时使回源中的旧结果失效
+         */
+        synchronized void put(int key, Entry entry) {
+            version++;
+            IntObjectHashMap<Entry> copy = copyLive();
+            copy.put(key, entry);
+            snapshot = copy;
+        }
+
+        synchronized void putAll(Collection<Integer> keys, Entry entry) {
+            IntObjectHashMap<Entry> copy = copyLive();
+            for (Integer key : keys) {
+                if (key != null) {
+                    copy.put(key.intValue(), entry);
+                }
+            }
+            snapshot = copy;
+        }
+
+        synchronized void remove(int key) {
+            version++;
+            if (!snapshot.containsKey(key)) {
+                return;
+            }
+            IntObjectHashMap<Entry> copy = copyLive();
+            copy.remove(key);
+            snapshot = copy;
+        }
+
+        synchronized void removeAll(Collection<Integer> keys) {
+            version++;
+            IntObjectHashMap<Entry> copy = copyLive();
+            for (Integer key : keys) {
+                if (key != null) {
+                    copy.remove(key.intValue());
+                }
+            }
+            snapshot = copy;
+        }
+
+        synchronized void clear() {
+            version++;
+            snapshot = new IntObjectHashMap<>();
+        }
+
+        private IntObjectHashMap<Entry> copyLive() {
+            long now = System.currentTimeMillis();
+            IntObjectHashMap<Entry> current = snapshot;
+            IntObjectHashMap<Entry> copy = new IntObjectHashMap<>(current.size() + 1);
+            for (IntObjectMap.PrimitiveEntry<Entry> e : current.entries()) {
+                if (e.value().expireAt() > now) {
+                    copy.put(e.key(), e.value());
+                }
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * 并发位图：按 slotId 置位，读取无锁；容量不足时加锁扩容，
+     * 写入后若发现数组已被替换则在新数组上重做一次，避免扩容期间的写入丢失。
+     */
+    private static final class SoldOutBits {
+        private volatile AtomicLongArray words = new AtomicLongArray(64);
+
+        boolean get(int bit) {
+            AtomicLongArray current = words;
+            int index = bit >>> 6;
+            return index < current.length() && (current.get(index) & (1L << bit)) != 0;
+        }
+
+        void set(int bit) {
+            int index = bit >>> 6;
+            long mask = 1L << bit;
+            AtomicLongArray current;
+            do {
+                current = ensureCapacity(index);
+                current.getAndAccumulate(index, mask, (word, m) -> word | m);
+            } while (current != words);
+        }
+
+        void clear(int bit) {
+            int index = bit >>> 6;
+            long mask = ~(1L << bit);
+            AtomicLongArray current;
+            do {
+                current = words;
+                if (index >= current.length()) {
+                    return;
+                }
+                current.getAndAccumulate(index, mask, (word, m) -> word & m);
+            } while (current != words);
+        }
+
+        synchronized void clearAll() {
+            words = new AtomicLongArray(words.length());
+        }
+
+        private AtomicLongArray ensureCapacity(int index) {
+            AtomicLongArray current = words;
+            if (index < current.length()) {
+                return current;
+            }
+            synchronized (this) {
+                current = words;
+                if (index < current.length()) {
+                    return current;
+                }
+                AtomicLongArray grown = new AtomicLongArray(Math.max(index + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                words = grown;
+                return grown;
+            }
+        }
+    }
+}
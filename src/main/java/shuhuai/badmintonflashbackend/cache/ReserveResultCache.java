@@ -0,0 +1,159 @@
+package shuhuai.badmintonflashbackend.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.config.ReserveResultConfig;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.enm.ReserveResultStatus;
+import shuhuai.badmintonflashbackend.entity.Reservation;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预约终态结果缓存
+ * 成功记录格式 S:{userId}:{reservationId}，失败标记格式 F:{userId}，短 TTL。
+ * 消费落库、业务冲突与发布补偿时写入，结果查询先一次 MGET 读终态记录与 pending 键，都未命中才查数据库。
+ * 成功记录不含预约状态，状态会随取消、支付、超时变化，由查询方按 reservationId 实时读取。
+ */
+@Slf4j
+@Component
+public class ReserveResultCache {
+    private static final String SUCCESS = "S";
+    private static final String FAILED = "F";
+
+    private final RedissonClient redisson;
+    private final ReserveResultConfig resultConfig;
+
+    public ReserveResultCache(RedissonClient redisson, ReserveResultConfig resultConfig) {
+        this.redisson = redisson;
+        this.resultConfig = resultConfig;
+    }
+
+    /**
+     * @param status        结果状态
+     * @param userId        预约用户，pending 值无法解析时为 null
+     * @param reservationId 成功时的预约 ID
+     */
+    public record Entry(ReserveResultStatus status, Integer userId, Integer reservationId) {
+    }
+
+    /**
+     * 一次往返读取终态记录与 pending 键，都不存在时返回 null
+     */
+    public Entry lookup(String traceId) {
+        String resultKey = RedisKeys.reserveResultKey(traceId);
+        String pendingKey = RedisKeys.reservePendingKey(traceId);
+        Map<String, String> values = redisson.getBuckets(StringCodec.INSTANCE).get(resultKey, pendingKey);
+        Entry result = parseResult(values.get(resultKey));
+        if (result != null) {
+            return result;
+        }
+        String pending = values.get(pendingKey);
+        if (pending == null || pending.isBlank()) {
+            return null;
+        }
+        return new Entry(ReserveResultStatus.PENDING, parseInt(pending.split(":", 2)[0]), null);
+    }
+
+    public void putSuccess(Reservation reservation) {
+        putSuccess(List.of(reservation));
+    }
+
+    /**
+     * 批量写入成功记录，一次往返
+     */
+    public void putSuccess(Collection<Reservation> reservations) {
+        if (reservations == null || reservations.isEmpty()) {
+            return;
+        }
+        Duration ttl = ttl();
+        RBatch batch = redisson.createBatch();
+        for (Reservation reservation : reservations) {
+            if (reservation == null || reservation.getTraceId() == null) {
+                continue;
+            }
+            batch.<String>getBucket(RedisKeys.reserveResultKey(reservation.getTraceId()), StringCodec.INSTANCE)
+                    .setAsync(String.join(":", SUCCESS, String.valueOf(reservation.getUserId()),
+                            String.valueOf(reservation.getId())), ttl);
+        }
+        execute(batch);
+    }
+
+    /**
+     * 写入失败标记，之后的查询不再回源数据库
+     */
+    public void putFailed(String traceId, Integer userId) {
+        if (traceId == null || traceId.isEmpty()) {
+            return;
+        }
+        try {
+            redisson.<String>getBucket(RedisKeys.reserveResultKey(traceId), StringCodec.INSTANCE)
+                    .set(FAILED + ":" + (userId == null ? "" : userId), ttl());
+        } catch (Exception e) {
+            log.warn("预约失败标记写入失败 traceId={}, error={}", traceId, e.getMessage());
+        }
+    }
+
+    /**
+     * 批量写入失败标记，一次往返
+     *
+     * @param userIdByTraceId traceId -> 预约用户
+     */
+    public void putFailed(Map<String, Integer> userIdByTraceId) {
+        if (userIdByTraceId == null || userIdByTraceId.isEmpty()) {
+            return;
+        }
+        Duration ttl = ttl();
+        RBatch batch = redisson.createBatch();
+        userIdByTraceId.forEach((traceId, userId) ->
+                batch.<String>getBucket(RedisKeys.reserveResultKey(traceId), StringCodec.INSTANCE)
+                        .setAsync(FAILED + ":" + (userId == null ? "" : userId), ttl));
+        execute(batch);
+    }
+
+    private Duration ttl() {
+        return Duration.ofSeconds(resultConfig.getTtlSeconds());
+    }
+
+    private void execute(RBatch batch) {
+        try {
+            batch.execute();
+        } catch (Exception e) {
+            // 缓存写入失败时查询回源数据库
+            log.warn("预约结果缓存写入失败 error={}", e.getMessage());
+        }
+    }
+
+    private static Entry parseResult(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        String[] parts = value.split(":", -1);
+        // 兼容升级前带状态快照的四段格式，快照部分忽略
+        if (SUCCESS.equals(parts[0]) && (parts.length == 3 || parts.length == 4)) {
+            Integer reservationId = parseInt(parts[2]);
+            if (reservationId == null) {
+                return null;
+            }
+            return new Entry(ReserveResultStatus.SUCCESS, parseInt(parts[1]), reservationId);
+        }
+        if (FAILED.equals(parts[0]) && parts.length == 2) {
+            return new Entry(ReserveResultStatus.FAILED, parseInt(parts[1]), null);
+        }
+        return null;
+    }
+
+    private static Integer parseInt(String value) {
+        try {
+            return value == null || value.isEmpty() ? null : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package shuhuai.badmintonflashbackend.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import shuhuai.badmintonflashbackend.config.ReserveAvailabilityConfig;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.entity.TimeSlot;
+import shuhuai.badmintonflashbackend.mapper.ITimeSlotMapper;
+import shuhuai.badmintonflashbackend.model.vo.SlotAvailabilityVO;
+import shuhuai.badmintonflashbackend.response.Response;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
+import shuhuai.badmintonflashbackend.utils.DateTimes;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 场次某日的 slot 余量视图
+ * slot 列表只在首次访问或 slot 重建后查库；余量按刷新间隔一次往返从 Redis 读取，只有余量变化时才重新序列化并更新 ETag。
+ * 刷新期间其他请求直接返回旧视图，不排队等待。
+ * 归还库存、闸门变化的广播会让视图在下次访问时立即刷新，slot 重建的广播会丢弃全部视图。
+ */
+@Slf4j
+@Component
+public class SlotAvailabilityCache {
+    private static final String SLOTS_PREFIX = "slots:";
+
+    private final ITimeSlotMapper timeSlotMapper;
+    private final ISlotStockService slotStockService;
+    private final ObjectMapper objectMapper;
+    private final RedissonClient redisson;
+    private final ReserveAvailabilityConfig availabilityConfig;
+    private final Map<Key, Holder> views = new ConcurrentHashMap<>();
+    private RTopic topic;
+    private int listenerId = -1;
+
+    public SlotAvailabilityCache(ITimeSlotMapper timeSlotMapper, ISlotStockService slotStockService,
+                                 ObjectMapper objectMapper, RedissonClient redisson,
+                                 ReserveAvailabilityConfig availabilityConfig) {
+        this.timeSlotMapper = timeSlotMapper;
+        this.slotStockService = slotStockService;
+        this.objectMapper = objectMapper;
+        this.redisson = redisson;
+        this.availabilityConfig = availabilityConfig;
+    }
+
+    /**
+     * @param etag 响应体摘要，多实例间一致
+     * @param body 已序列化的响应体
+     */
+    public record View(String etag, byte[] body) {
+    }
+
+    private record Key(Integer sessionId, LocalDate date) {
+    }
+
+    private static final class Holder {
+        private volatile List<TimeSlot> slots;
+        private volatile Map<Integer, Integer> remaining;
+        private volatile View view;
+        private volatile long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        topic = redisson.getTopic(RedisKeys.reserveCacheChannel(), StringCodec.INSTANCE);
+        listenerId = topic.addListener(String.class, (channel, message) -> onMessage(message));
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (topic != null) {
+            topic.removeListener(listenerId);
+        }
+    }
+
+    public boolean contains(Integer sessionId, LocalDate date) {
+        return views.containsKey(new Key(sessionId, date));
+    }
+
+    public View get(Integer sessionId, LocalDate date) {
+        Key key = new Key(sessionId, date);
+        Holder holder = views.get(key);
+        if (holder == null) {
+            evictPastDays();
+            // 冷启动时同一场次只查一次库，其余请求等待同一结果
+            return views.computeIfAbsent(key, this::load).view;
+        }
+        if (System.currentTimeMillis() - holder.loadedAt >= availabilityConfig.getRefreshMs()
+                && holder.refreshing.compareAndSet(false, true)) {
+            try {
+                refresh(key, holder);
+            } catch (Exception e) {
+                log.warn("余量视图刷新失败 sessionId={}, date={}, error={}", sessionId, date, e.getMessage());
+            } finally {
+                holder.refreshing.set(false);
+            }
+        }
+        return holder.view;
+    }
+
+    private Holder load(Key key) {
+        Holder holder = new Holder();
+        holder.slots = loadSlots(key);
+        holder.remaining = loadRemaining(key, holder.slots);
+        holder.view = render(holder.slots, holder.remaining);
+        holder.loadedAt = System.currentTimeMillis();
+        return holder;
+    }
+
+    private void refresh(Key key, Holder holder) {
+        // slot 尚未生成时一并重查 slot 列表
+        boolean slotsChanged = false;
+        if (holder.slots.isEmpty()) {
+            List<TimeSlot> slots = loadSlots(key);
+            slotsChanged = !slots.isEmpty();
+            holder.slots = slots;
+        }
+        Map<Integer, Integer> remaining = loadRemaining(key, holder.slots);
+        if (slotsChanged || !Objects.equals(remaining, holder.remaining)) {
+            holder.remaining = remaining;
+            holder.view = render(holder.slots, remaining);
+        }
+        holder.loadedAt = System.currentTimeMillis();
+    }
+
+    private List<TimeSlot> loadSlots(Key key) {
+        return timeSlotMapper.selectList(new LambdaQueryWrapper<TimeSlot>()
+                .select(TimeSlot::getId, TimeSlot::getCourtId, TimeSlot::getStartTime, TimeSlot::getEndTime)
+                .eq(TimeSlot::getSessionId, key.sessionId())
+                .eq(TimeSlot::getSlotDate, key.date())
+                .orderByAsc(TimeSlot::getStartTime, TimeSlot::getCourtId));
+    }
+
+    private Map<Integer, Integer> loadRemaining(Key key, List<TimeSlot> slots) {
+        if (slots.isEmpty()) {
+            return Map.of();
+        }
+        return slotStockService.getRemaining(key.sessionId(), slots.stream().map(TimeSlot::getId).toList());
+    }
+
+    private View render(List<TimeSlot> slots, Map<Integer, Integer> remaining) {
+        List<SlotAvailabilityVO> items = new ArrayList<>(slots.size());
+        for (TimeSlot slot : slots) {
+            items.add(new SlotAvailabilityVO(slot.getId(), slot.getCourtId(), slot.getStartTime(), slot.getEndTime(),
+                    remaining.get(slot.getId())));
+        }
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(new Response<>(items));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("余量视图序列化失败", e);
+        }
+        return new View(DigestUtils.md5DigestAsHex(body), body);
+    }
+
+    private void evictPastDays() {
+        LocalDate today = DateTimes.nowDate();
+        views.keySet().removeIf(key -> key.date().isBefore(today));
+    }
+
+    private void onMessage(String message) {
+        if (message == null) {
+            return;
+        }
+        if (message.startsWith(SLOTS_PREFIX)) {
+            views.clear();
+            return;
+        }
+        // 归还库存、闸门变化：下次访问立即刷新余量
+        for (Holder holder : views.values()) {
+            holder.loadedAt = 0L;
+        }
+    }
+}
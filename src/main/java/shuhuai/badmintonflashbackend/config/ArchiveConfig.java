@@ -0,0 +1,27 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ArchiveConfig {
+    /**
+     * 在线表保留的天数，slot_date 早于“今天 - retainDays”的数据会被归档
+     */
+    @Value("${app.archive.retainDays:180}")
+    private Integer retainDays;
+
+    /**
+     * 每个事务归档的 slot 数
+     */
+    @Value("${app.archive.batchSize:500}")
+    private Integer batchSize;
+}
@@ -0,0 +1,21 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ConfigCacheConfig {
+    /**
+     * 兜底轮询间隔（毫秒），广播丢失时配置快照最多陈旧这么久
+     */
+    @Value("${app.configCache.refreshIntervalMs:30000}")
+    private Long refreshIntervalMs;
+}
@@ -0,0 +1,27 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class PinningMonitorConfig {
+    /**
+     * 是否监听虚拟线程 pinning 事件（JFR jdk.VirtualThreadPinned）
+     */
+    @Value("${app.pinningMonitor.enabled:false}")
+    private Boolean enabled;
+
+    /**
+     * 只记录持续时间不少于该值的 pinning（毫秒）
+     */
+    @Value("${app.pinningMonitor.thresholdMs:20}")
+    private Long thresholdMs;
+}
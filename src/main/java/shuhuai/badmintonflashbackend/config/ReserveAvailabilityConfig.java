@@ -0,0 +1,21 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReserveAvailabilityConfig {
+    /**
+     * 余量视图刷新间隔（毫秒），每个实例每场次每天在此间隔内最多读一次 Redis
+     */
+    @Value("${reserve.availability.refreshMs:1000}")
+    private Long refreshMs;
+}
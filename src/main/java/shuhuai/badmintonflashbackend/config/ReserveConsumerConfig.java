@@ -0,0 +1,33 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReserveConsumerConfig {
+    /**
+     * 是否启用批量消费
+     */
+    @Value("${reserve.consumer.batchEnabled:false}")
+    private Boolean batchEnabled;
+
+    /**
+     * 每批最多消息数
+     */
+    @Value("${reserve.consumer.batchSize:100}")
+    private Integer batchSize;
+
+    /**
+     * 凑批等待时间（毫秒），超时后按已收到的消息提交
+     */
+    @Value("${reserve.consumer.receiveTimeout:200}")
+    private Long receiveTimeout;
+}
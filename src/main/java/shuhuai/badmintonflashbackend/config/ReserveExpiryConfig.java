@@ -0,0 +1,27 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReserveExpiryConfig {
+    /**
+     * 到期队列轮询间隔（毫秒）
+     */
+    @Value("${reserve.expiry.pollIntervalMs:1000}")
+    private Long pollIntervalMs;
+
+    /**
+     * 每批最多取消的预约数
+     */
+    @Value("${reserve.expiry.batchSize:200}")
+    private Integer batchSize;
+}
@@ -0,0 +1,45 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReserveLotteryConfig {
+    /**
+     * 开闸后接受登记的秒数，窗口结束后统一分配
+     */
+    @Value("${reserve.lottery.windowSeconds:60}")
+    private Long windowSeconds;
+
+    /**
+     * 每个用户在同一场次最多登记的意向数，按登记顺序作为偏好顺序
+     */
+    @Value("${reserve.lottery.maxIntentsPerUser:5}")
+    private Integer maxIntentsPerUser;
+
+    /**
+     * 连续未中签每次增加的权重，基础权重为 1
+     */
+    @Value("${reserve.lottery.lossBonus:0.5}")
+    private Double lossBonus;
+
+    /**
+     * 计入权重的连续未中签次数上限
+     */
+    @Value("${reserve.lottery.maxLossStreak:10}")
+    private Integer maxLossStreak;
+
+    /**
+     * 检查到期场次并分配的间隔
+     */
+    @Value("${reserve.lottery.allocateIntervalMs:1000}")
+    private Long allocateIntervalMs;
+}
@@ -0,0 +1,28 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReserveNearCacheConfig {
+    /**
+     * 是否启用闸门、slot→session 本地近缓存
+     */
+    @Value("${reserve.nearCache.enabled:true}")
+    private Boolean enabled;
+
+    /**
+     * 未开闸状态的本地缓存毫秒数；已开闸状态缓存到当日结束
+     * 开闸依赖广播失效，这里设短一些，广播丢失时最多延迟这么久才能看到开闸
+     */
+    @Value("${reserve.nearCache.closedGateTtlMs:1000}")
+    private Long closedGateTtlMs;
+}
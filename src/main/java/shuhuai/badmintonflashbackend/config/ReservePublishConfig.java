@@ -0,0 +1,33 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReservePublishConfig {
+    /**
+     * 预约消息发送缓冲区容量，满时直接拒绝请求
+     */
+    @Value("${reserve.publish.bufferSize:10000}")
+    private Integer bufferSize;
+
+    /**
+     * 发送线程每轮最多取出的消息数
+     */
+    @Value("${reserve.publish.batchSize:200}")
+    private Integer batchSize;
+
+    /**
+     * 发送线程数
+     */
+    @Value("${reserve.publish.workers:2}")
+    private Integer workers;
+}
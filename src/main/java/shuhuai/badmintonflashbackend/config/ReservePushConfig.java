@@ -0,0 +1,21 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReservePushConfig {
+    /**
+     * 预约结果推送连接最长保持时间（毫秒），超时后客户端回退为查询接口
+     */
+    @Value("${reserve.push.timeoutMs:10000}")
+    private Long timeoutMs;
+}
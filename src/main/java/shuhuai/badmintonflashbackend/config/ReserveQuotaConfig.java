@@ -0,0 +1,21 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReserveQuotaConfig {
+    /**
+     * 每个用户在同一场次内最多占用的 slot 数
+     */
+    @Value("${reserve.quota.perSession:1}")
+    private Integer perSession;
+}
@@ -0,0 +1,54 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReserveRateLimitConfig {
+    /**
+     * 每个用户在一个周期内最多尝试次数，0 表示不限
+     */
+    @Value("${reserve.rateLimit.userCapacity:5}")
+    private Long userCapacity;
+
+    @Value("${reserve.rateLimit.userPeriodMs:60000}")
+    private Long userPeriodMs;
+
+    /**
+     * 每个客户端 IP 在一个周期内最多尝试次数，0 表示不限
+     */
+    @Value("${reserve.rateLimit.ipCapacity:30}")
+    private Long ipCapacity;
+
+    @Value("${reserve.rateLimit.ipPeriodMs:60000}")
+    private Long ipPeriodMs;
+
+    /**
+     * 每个场次在一个周期内全局最多放行的尝试次数，0 表示不限
+     */
+    @Value("${reserve.rateLimit.sessionCapacity:2000}")
+    private Long sessionCapacity;
+
+    @Value("${reserve.rateLimit.sessionPeriodMs:1000}")
+    private Long sessionPeriodMs;
+
+    /**
+     * 是否启用本地令牌桶预筛
+     */
+    @Value("${reserve.rateLimit.localEnabled:true}")
+    private Boolean localEnabled;
+
+    /**
+     * 本地令牌桶最多保留的键数，超出后不再新建，交给 Redis 判定
+     */
+    @Value("${reserve.rateLimit.localMaxEntries:100000}")
+    private Integer localMaxEntries;
+}
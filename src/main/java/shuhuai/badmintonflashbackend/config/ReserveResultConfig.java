@@ -0,0 +1,21 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReserveResultConfig {
+    /**
+     * 预约终态结果缓存保留时间（秒），过期后结果查询回源数据库
+     */
+    @Value("${reserve.result.ttlSeconds:120}")
+    private Long ttlSeconds;
+}
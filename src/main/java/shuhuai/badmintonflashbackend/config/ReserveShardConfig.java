@@ -0,0 +1,45 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.constant.MqNames;
+
+import java.util.stream.IntStream;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReserveShardConfig {
+    /**
+     * 预约队列分片数，同一 slotId 固定落在同一分片
+     */
+    @Value("${reserve.shard.count:4}")
+    private Integer count;
+
+    /**
+     * slotId 所属分片
+     */
+    public int shardOf(Integer slotId) {
+        return Math.floorMod(slotId, count);
+    }
+
+    /**
+     * 全部分片主队列名
+     */
+    public String[] queueNames() {
+        return IntStream.range(0, count).mapToObj(MqNames::reserveQueue).toArray(String[]::new);
+    }
+
+    /**
+     * 全部分片死信队列名
+     */
+    public String[] dlqNames() {
+        return IntStream.range(0, count).mapToObj(MqNames::reserveDlq).toArray(String[]::new);
+    }
+}
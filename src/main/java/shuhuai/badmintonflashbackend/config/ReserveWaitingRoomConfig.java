@@ -0,0 +1,45 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class ReserveWaitingRoomConfig {
+    /**
+     * 是否启用等候室，启用后只有已放行的用户可以抢占
+     */
+    @Value("${reserve.waitingRoom.enabled:false}")
+    private Boolean enabled;
+
+    /**
+     * 开抢前入队的排序方式：random 随机，fifo 先到先得；开抢后入队的始终按到达顺序排在后面
+     */
+    @Value("${reserve.waitingRoom.order:random}")
+    private String order;
+
+    /**
+     * 每个场次在途放行人数 = 剩余库存 × 该系数（向上取整）
+     */
+    @Value("${reserve.waitingRoom.admitFactor:2.0}")
+    private Double admitFactor;
+
+    /**
+     * 放行有效期，过期未抢占需重新排队
+     */
+    @Value("${reserve.waitingRoom.admissionTtlSeconds:60}")
+    private Long admissionTtlSeconds;
+
+    /**
+     * 放行批次间隔
+     */
+    @Value("${reserve.waitingRoom.admitIntervalMs:500}")
+    private Long admitIntervalMs;
+}
@@ -0,0 +1,27 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class SchedulerLeaderConfig {
+    /**
+     * leader 租约时长（毫秒），leader 宕机后最多经过这么久由其他实例接管
+     */
+    @Value("${app.scheduler.leaseMs:10000}")
+    private Long leaseMs;
+
+    /**
+     * 抢占/续期间隔（毫秒），应明显小于租约时长
+     */
+    @Value("${app.scheduler.renewIntervalMs:3000}")
+    private Long renewIntervalMs;
+}
@@ -0,0 +1,27 @@
+package shuhuai.badmintonflashbackend.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Component
+public class SlotGenConfig {
+    /**
+     * 生成 slot 时每条多行 insert 的最大行数
+     */
+    @Value("${app.slotGen.chunkSize:500}")
+    private Integer chunkSize;
+
+    /**
+     * 预生成窗口天数（含当天），每天一次批量生成窗口内所有场次的 slot
+     */
+    @Value("${app.slotGen.horizonDays:3}")
+    private Integer horizonDays;
+}
@@ -4,15 +4,35 @@ package shuhuai.badmintonflashbackend.constant;
 public class MqNames {
     /** 预约主交换机（生产消息写入入口） */
     public static final String RESERVE_EXCHANGE = "reserve.direct";
-    /** 预约主队列（正常消费） */
+    /** 预约主队列前缀（按 slotId 分片，实际队列为 reserve.queue.{shard}） */
     public static final String RESERVE_QUEUE = "reserve.queue";
-    /** 主交换机 -> 主队列路由键 */
+    /** 主交换机 -> 主队列路由键前缀 */
     public static final String RESERVE_ROUTING_KEY = "reserve";
 
     /** 死信交换机（消费失败后的消息入口） */
     public static final String RESERVE_DLX_EXCHANGE = "reserve.dlx";
-    /** 死信队列（用于排障/补偿处理） */
+    /** 死信队列前缀（用于排障/补偿处理，与主队列一一对应） */
     public static final String RESERVE_DLQ = "reserve.dlq";
-    /** 死信交换机 -> 死信队列路由键 */
+    /** 死信交换机 -> 死信队列路由键前缀 */
     public static final String RESERVE_DLQ_ROUTING_KEY = "reserve.dlq";
+
+    /** 分片主队列 */
+    public static String reserveQueue(int shard) {
+        return RESERVE_QUEUE + "." + shard;
+    }
+
+    /** 分片主队列路由键 */
+    public static String reserveRoutingKey(int shard) {
+        return RESERVE_ROUTING_KEY + "." + shard;
+    }
+
+    /** 分片死信队列 */
+    public static String reserveDlq(int shard) {
+        return RESERVE_DLQ + "." + shard;
+    }
+
+    /** 分片死信队列路由键 */
+    public static String reserveDlqRoutingKey(int shard) {
+        return RESERVE_DLQ_ROUTING_KEY + "." + shard;
+    }
 }
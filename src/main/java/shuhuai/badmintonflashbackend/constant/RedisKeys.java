@@ -20,9 +20,9 @@ public class RedisKeys {
     }
 
 
-    /** slotId 对应的去重集合 */
-    public static String dedupKey(Integer slotId) {
-        return PREFIX + "dedup:" + slotId;
+    /** sessionId 对应的用户配额 hash，field 为 userId，值为该场次内占用的 slot 数 */
+    public static String userDedupKey(Integer sessionId) {
+        return PREFIX + "dedup:session:" + sessionId;
     }
 
     /** slotId 对应的 sessionId 映射 */
@@ -30,6 +30,16 @@ public class RedisKeys {
         return PREFIX + "slot:session:" + slotId;
     }
 
+    /** sessionId 对应的库存 hash，field 为 slotId（reserve.keyLayout=session） */
+    public static String sessionStockKey(Integer sessionId) {
+        return PREFIX + "session:stock:" + sessionId;
+    }
+
+    /** 全部 slot 的 sessionId 映射 hash，field 为 slotId（reserve.keyLayout=session） */
+    public static String slotSessionHashKey() {
+        return PREFIX + "slot:sessions";
+    }
+
     /** sessionId 对应的闸门 */
     public static String gateKey(Integer sessionId) {
         return PREFIX + "gate:" + sessionId;
@@ -65,26 +75,136 @@ public class RedisKeys {
         return PREFIX + "slotgen:lock:" + DateTimes.yyyymmdd(day) + ":" + sessionId;
     }
 
+    /** 指定日期 + session 的 slot 计划（逗号分隔的 slotId），预热时代替查库 */
+    public static String slotPlanKey(LocalDate day, Integer sessionId) {
+        return PREFIX + "slotgen:plan:" + DateTimes.yyyymmdd(day) + ":" + sessionId;
+    }
+
+    /** 指定日期的多天 slot 预生成完成标记 */
+    public static String slotHorizonDoneKey(LocalDate day) {
+        return PREFIX + "slotgen:horizon:" + DateTimes.yyyymmdd(day);
+    }
+
+    /** 多天 slot 预生成任务锁 */
+    public static String slotHorizonLockKey() {
+        return PREFIX + "lock:slot-horizon";
+    }
+
+    /** 定时任务 leader 租约，值为 token:instanceId */
+    public static String schedulerLeaderKey() {
+        return PREFIX + "scheduler:leader";
+    }
+
+    /** 定时任务 leader 的 fencing token 计数器，每次换主递增 */
+    public static String schedulerFencingKey() {
+        return PREFIX + "scheduler:fencing";
+    }
+
     /** 限流键 */
     public static String limitKey(String userKey) {
         return PREFIX + "limit:" + userKey;
     }
 
+    /** 客户端 IP 限流键 */
+    public static String ipLimitKey(String clientIp) {
+        return PREFIX + "limit:ip:" + clientIp;
+    }
+
+    /** 场次全局限流键 */
+    public static String sessionLimitKey(Integer sessionId) {
+        return PREFIX + "limit:session:" + sessionId;
+    }
+
+    /** 等候室排队 zset（member=userId, score=排队顺序） */
+    public static String waitQueueKey(Integer sessionId) {
+        return PREFIX + "wait:queue:" + sessionId;
+    }
+
+    /** 等候室已放行 zset（member=userId, score=放行截止毫秒） */
+    public static String waitAdmittedKey(Integer sessionId) {
+        return PREFIX + "wait:admitted:" + sessionId;
+    }
+
+    /** 有用户排队的场次集合 */
+    public static String waitSessionsKey() {
+        return PREFIX + "wait:sessions";
+    }
+
+    /** 抽签意向 list（userId:slotId:traceId，按登记顺序追加） */
+    public static String lotteryIntentKey(Integer sessionId) {
+        return PREFIX + "lottery:intent:" + sessionId;
+    }
+
+    /** 抽签每用户已登记意向数 hash */
+    public static String lotteryUserIntentKey(Integer sessionId) {
+        return PREFIX + "lottery:user:" + sessionId;
+    }
+
+    /** 有待分配意向的场次集合 */
+    public static String lotterySessionsKey() {
+        return PREFIX + "lottery:sessions";
+    }
+
+    /** 场次抽签已扣库存的中签意向 set（userId:slotId:traceId），分配失败时据此回滚或补完 */
+    public static String lotteryTakenKey(Integer sessionId) {
+        return PREFIX + "lottery:taken:" + sessionId;
+    }
+
+    /** 场次抽签分配标记（running 为分配租约，done 为已完成） */
+    public static String lotteryDoneKey(Integer sessionId) {
+        return PREFIX + "lottery:done:" + sessionId;
+    }
+
+    /** 用户连续未中签次数 hash */
+    public static String lotteryLossKey() {
+        return PREFIX + "lottery:loss";
+    }
+
+    /** 预约终态结果缓存键 */
+    public static String reserveResultKey(String traceId) {
+        return PREFIX + "reserve:result:" + traceId;
+    }
+
     /** 预约消息发布待确认补偿键 */
     public static String reservePendingKey(String traceId) {
         return PREFIX + "reserve:pending:" + traceId;
     }
 
+    /** 待支付预约到期队列，成员为 reservationId，score 为创建时间（毫秒） */
+    public static String reserveExpireKey() {
+        return PREFIX + "reserve:expire";
+    }
+
     /** reservationId 维度支付创建锁 */
     public static String payCreateLockKey(Integer reservationId) {
         return PREFIX + "pay:create:lock:" + reservationId;
     }
 
+    /** 预约结果推送广播频道 */
+    public static String reserveResultChannel() {
+        return PREFIX + "channel:reserve-result";
+    }
+
+    /** 配置变更广播频道 */
+    public static String configChannel() {
+        return PREFIX + "channel:config";
+    }
+
+    /** 闸门、slot→session 本地近缓存失效广播频道 */
+    public static String reserveCacheChannel() {
+        return PREFIX + "channel:reserve-cache";
+    }
+
     /** 启动时球场配置对账任务锁 */
     public static String courtBootstrapLockKey() {
         return PREFIX + "lock:court-bootstrap";
     }
 
+    /** 夜间历史数据归档任务锁 */
+    public static String archiveLockKey() {
+        return PREFIX + "lock:archive";
+    }
+
     /**
      * 计算距离当天 23:59:59 的秒数
      * @param day 目标日期
@@ -9,6 +9,7 @@ import shuhuai.badmintonflashbackend.model.dto.AdminUserDTO;
 import shuhuai.badmintonflashbackend.model.dto.ConfigDTO;
 import shuhuai.badmintonflashbackend.model.dto.ConfigItemDTO;
 import shuhuai.badmintonflashbackend.model.dto.FlashSessionDTO;
+import shuhuai.badmintonflashbackend.model.vo.SchedulerStatusVO;
 import shuhuai.badmintonflashbackend.model.vo.UserAccountVO;
 import shuhuai.badmintonflashbackend.response.Response;
 import shuhuai.badmintonflashbackend.service.IAdminService;
@@ -88,6 +89,11 @@ public class AdminController {
         return new Response<>();
     }
 
+    @GetMapping("/scheduler")
+    public Response<SchedulerStatusVO> getSchedulerStatus() {
+        return new Response<>(adminService.getSchedulerStatus());
+    }
+
     @GetMapping("/users")
     public Response<List<UserAccountVO>> listUsers() {
         return new Response<>(userService.listUsers());
@@ -1,7 +1,10 @@
 package shuhuai.badmintonflashbackend.controller;
 
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import shuhuai.badmintonflashbackend.auth.RequireRole;
+import shuhuai.badmintonflashbackend.cache.SlotAvailabilityCache;
 import shuhuai.badmintonflashbackend.enm.ReservationStatus;
 import shuhuai.badmintonflashbackend.enm.UserRole;
 import shuhuai.badmintonflashbackend.entity.Court;
@@ -10,6 +13,7 @@ import shuhuai.badmintonflashbackend.entity.Reservation;
 import shuhuai.badmintonflashbackend.entity.TimeSlot;
 import shuhuai.badmintonflashbackend.model.dto.ConditionBrowseSessionDTO;
 import shuhuai.badmintonflashbackend.model.dto.ConditionBrowseSlotDTO;
+import shuhuai.badmintonflashbackend.model.vo.CursorPageVO;
 import shuhuai.badmintonflashbackend.response.Response;
 import shuhuai.badmintonflashbackend.service.IBrowseService;
 import shuhuai.badmintonflashbackend.utils.TokenValidator;
@@ -84,13 +88,29 @@ public class BrowseController {
         return new Response<>(browseService.getSlots(conditionBrowseSlotDTO));
     }
 
+    /**
+     * 场次某日的 slot 余量，响应体预先序列化；带 If-None-Match 且未变化时返回 304
+     */
+    @GetMapping("/slot/availability")
+    public ResponseEntity<byte[]> getSlotAvailability(@RequestParam Integer sessionId,
+                                                      @RequestParam(required = false) LocalDate date) {
+        SlotAvailabilityCache.View view = browseService.getSlotAvailability(sessionId, date);
+        return ResponseEntity.ok()
+                .eTag(view.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(view.body());
+    }
+
     @GetMapping("/reservation")
-    public Response<List<Reservation>> getReservations(@RequestParam(required = false) Integer sessionId,
-                                                       @RequestParam(required = false) Integer slotId,
-                                                       @RequestParam(required = false) Set<ReservationStatus> statuses,
-                                                       @RequestParam(required = false) LocalDate dateLowerBound,
-                                                       @RequestParam(required = false) LocalDate dateUpperBound) {
+    public Response<CursorPageVO<Reservation>> getReservations(@RequestParam(required = false) Integer sessionId,
+                                                               @RequestParam(required = false) Integer slotId,
+                                                               @RequestParam(required = false) Set<ReservationStatus> statuses,
+                                                               @RequestParam(required = false) LocalDate dateLowerBound,
+                                                               @RequestParam(required = false) LocalDate dateUpperBound,
+                                                               @RequestParam(required = false) Integer cursor,
+                                                               @RequestParam(required = false) Integer size) {
         Integer userId = Integer.parseInt(TokenValidator.getUser().get("userId"));
-        return new Response<>(browseService.getReservations(userId, sessionId, slotId, statuses, dateLowerBound, dateUpperBound));
+        return new Response<>(browseService.getReservations(userId, sessionId, slotId, statuses, dateLowerBound,
+                dateUpperBound, cursor, size));
     }
 }
@@ -1,13 +1,20 @@
 package shuhuai.badmintonflashbackend.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Mono;
 import shuhuai.badmintonflashbackend.auth.RequireRole;
+import shuhuai.badmintonflashbackend.enm.ReserveResultStatus;
 import shuhuai.badmintonflashbackend.enm.UserRole;
 import shuhuai.badmintonflashbackend.model.dto.ReserveDTO;
 import shuhuai.badmintonflashbackend.model.vo.ReserveResultVO;
+import shuhuai.badmintonflashbackend.model.vo.WaitingRoomVO;
+import shuhuai.badmintonflashbackend.mq.ReserveResultNotifier;
 import shuhuai.badmintonflashbackend.response.Response;
 import shuhuai.badmintonflashbackend.service.IReserveService;
+import shuhuai.badmintonflashbackend.service.IWaitingRoomService;
 import shuhuai.badmintonflashbackend.utils.TokenValidator;
 
 @RestController
@@ -15,17 +22,38 @@ import shuhuai.badmintonflashbackend.utils.TokenValidator;
 @RequireRole(UserRole.USER)
 public class ReserveController {
     private final IReserveService reserveService;
+    private final ReserveResultNotifier resultNotifier;
+    private final IWaitingRoomService waitingRoomService;
 
     @Autowired
-    public ReserveController(IReserveService reserveService) {
+    public ReserveController(IReserveService reserveService, ReserveResultNotifier resultNotifier,
+                             IWaitingRoomService waitingRoomService) {
         this.reserveService = reserveService;
+        this.resultNotifier = resultNotifier;
+        this.waitingRoomService = waitingRoomService;
+    }
+
+    /**
+     * 进入场次等候室，已在队中或已放行时返回当前状态
+     */
+    @PostMapping("/wait/{sessionId}")
+    public Response<WaitingRoomVO> enterWaitingRoom(@PathVariable Integer sessionId) {
+        Integer userId = Integer.parseInt(TokenValidator.getUser().get("userId"));
+        return new Response<>(waitingRoomService.enter(userId, sessionId));
+    }
+
+    @GetMapping("/wait/{sessionId}")
+    public Response<WaitingRoomVO> getWaitingRoomStatus(@PathVariable Integer sessionId) {
+        Integer userId = Integer.parseInt(TokenValidator.getUser().get("userId"));
+        return new Response<>(waitingRoomService.getStatus(userId, sessionId));
     }
 
     @PostMapping({"", "/"})
-    public Response<String> reserve(@RequestBody ReserveDTO reserveDTO) {
+    public Mono<Response<String>> reserve(@RequestBody ReserveDTO reserveDTO) {
+        // 用户信息绑定在请求上，需在组装 Mono 之前取出
         Integer userId = Integer.parseInt(TokenValidator.getUser().get("userId"));
-        String traceId = reserveService.reserve(userId, reserveDTO.getSlotId(), reserveDTO.getSessionId());
-        return new Response<>(traceId);
+        return reserveService.reserveReactive(userId, reserveDTO.getSlotId(), reserveDTO.getSessionId())
+                .map(traceId -> new Response<>(traceId));
     }
 
     @GetMapping("/result/{traceId}")
@@ -34,6 +62,28 @@ public class ReserveController {
         return new Response<>(reserveService.getReserveResult(userId, traceId));
     }
 
+    /**
+     * 订阅预约结果，出终态时推送一次并关闭；超时未出结果时客户端回退为查询接口
+     */
+    @GetMapping(value = "/result/{traceId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamReserveResult(@PathVariable String traceId) {
+        Integer userId = Integer.parseInt(TokenValidator.getUser().get("userId"));
+        // 先登记再查询，查询与登记之间产生的结果也能收到
+        SseEmitter emitter = resultNotifier.register(traceId);
+        ReserveResultVO current;
+        try {
+            current = reserveService.getReserveResult(userId, traceId);
+        } catch (RuntimeException e) {
+            resultNotifier.unregister(traceId, emitter);
+            throw e;
+        }
+        if (current.getStatus() != ReserveResultStatus.PENDING) {
+            resultNotifier.unregister(traceId, emitter);
+            resultNotifier.send(emitter, current);
+        }
+        return emitter;
+    }
+
     @DeleteMapping("/{reservationId}")
     public Response<Void> cancel(@PathVariable Integer reservationId) {
         Integer userId = Integer.parseInt(TokenValidator.getUser().get("userId"));
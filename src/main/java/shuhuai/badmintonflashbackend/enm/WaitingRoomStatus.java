@@ -0,0 +1,8 @@
+package shuhuai.badmintonflashbackend.enm;
+
+public enum WaitingRoomStatus {
+    NOT_OPEN,
+    NOT_QUEUED,
+    WAITING,
+    ADMITTED
+}
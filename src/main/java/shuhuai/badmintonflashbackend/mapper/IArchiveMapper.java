@@ -0,0 +1,71 @@
+package shuhuai.badmintonflashbackend.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 历史数据归档：按 time_slot 批次把 slot 及其预约、支付单搬到 *_history 表
+ * 删除顺序按外键依赖 pay_order -> reservation -> time_slot
+ */
+@Mapper
+public interface IArchiveMapper {
+    /**
+     * 取一批早于 cutoff 的 slot id
+     */
+    @Select("select id from time_slot where slot_date < #{cutoff} order by id limit #{limit}")
+    List<Integer> selectSlotIdsBefore(@Param("cutoff") LocalDate cutoff, @Param("limit") int limit);
+
+    @Insert({"<script>",
+            "insert ignore into pay_order_history (id, reservation_id, out_trade_no, pay_channel, amount, status,",
+            "third_trade_no, expire_time, create_time, update_time, is_active)",
+            "select p.id, p.reservation_id, p.out_trade_no, p.pay_channel, p.amount, p.status,",
+            "p.third_trade_no, p.expire_time, p.create_time, p.update_time, p.is_active",
+            "from pay_order p join reservation r on r.id = p.reservation_id",
+            "where r.slot_id in <foreach collection='slotIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    int copyPayOrders(@Param("slotIds") List<Integer> slotIds);
+
+    @Delete({"<script>",
+            "delete p from pay_order p join reservation r on r.id = p.reservation_id",
+            "where r.slot_id in <foreach collection='slotIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    int deletePayOrders(@Param("slotIds") List<Integer> slotIds);
+
+    /**
+     * active_slot_id 为生成列，不复制
+     */
+    @Insert({"<script>",
+            "insert ignore into reservation_history (id, user_id, slot_id, trace_id, status,",
+            "create_time, update_time, is_active)",
+            "select id, user_id, slot_id, trace_id, status, create_time, update_time, is_active from reservation",
+            "where slot_id in <foreach collection='slotIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    int copyReservations(@Param("slotIds") List<Integer> slotIds);
+
+    @Delete({"<script>",
+            "delete from reservation",
+            "where slot_id in <foreach collection='slotIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    int deleteReservations(@Param("slotIds") List<Integer> slotIds);
+
+    @Insert({"<script>",
+            "insert ignore into time_slot_history (id, slot_date, start_time, end_time, court_id, session_id,",
+            "create_time, update_time, is_active)",
+            "select id, slot_date, start_time, end_time, court_id, session_id, create_time, update_time, is_active",
+            "from time_slot",
+            "where id in <foreach collection='slotIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    int copyTimeSlots(@Param("slotIds") List<Integer> slotIds);
+
+    @Delete({"<script>",
+            "delete from time_slot",
+            "where id in <foreach collection='slotIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    int deleteTimeSlots(@Param("slotIds") List<Integer> slotIds);
+}
@@ -1,9 +1,58 @@
 package shuhuai.badmintonflashbackend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import shuhuai.badmintonflashbackend.enm.ReservationStatus;
 import shuhuai.badmintonflashbackend.entity.Reservation;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
 @Mapper
 public interface IReservationMapper extends BaseMapper<Reservation> {
-}
\ No newline at end of file
+    /**
+     * 多行插入，命中唯一键（active_slot_id / trace_id）的行被忽略
+     *
+     * @return 实际插入行数
+     */
+    @Insert({"<script>",
+            "insert ignore into reservation (user_id, slot_id, trace_id, status) values",
+            "<foreach collection='list' item='r' separator=','>",
+            "(#{r.userId}, #{r.slotId}, #{r.traceId}, #{r.status})",
+            "</foreach>",
+            "</script>"})
+    int insertIgnoreBatch(@Param("list") List<Reservation> reservations);
+
+    /**
+     * 用户预约记录按 id 倒序的游标分页，场次/日期条件通过关联 time_slot 过滤
+     *
+     * @param cursor 上一页最后一条的 id，为 null 时从最新开始
+     * @param limit  最多返回行数
+     */
+    @Select({"<script>",
+            "select r.* from reservation r",
+            "<if test='sessionId != null or dateLowerBound != null or dateUpperBound != null'>",
+            "join time_slot t on t.id = r.slot_id and t.is_active = 1",
+            "<if test='sessionId != null'>and t.session_id = #{sessionId}</if>",
+            "<if test='dateLowerBound != null'>and t.slot_date &gt;= #{dateLowerBound}</if>",
+            "<if test='dateUpperBound != null'>and t.slot_date &lt;= #{dateUpperBound}</if>",
+            "</if>",
+            "where r.user_id = #{userId} and r.is_active = 1",
+            "<if test='slotId != null'>and r.slot_id = #{slotId}</if>",
+            "<if test='statuses != null and statuses.size() > 0'>",
+            "and r.status in <foreach collection='statuses' item='s' open='(' separator=',' close=')'>#{s}</foreach>",
+            "</if>",
+            "<if test='cursor != null'>and r.id &lt; #{cursor}</if>",
+            "order by r.id desc limit #{limit}",
+            "</script>"})
+    List<Reservation> selectUserPage(@Param("userId") Integer userId, @Param("sessionId") Integer sessionId,
+                                     @Param("slotId") Integer slotId,
+                                     @Param("statuses") Collection<ReservationStatus> statuses,
+                                     @Param("dateLowerBound") LocalDate dateLowerBound,
+                                     @Param("dateUpperBound") LocalDate dateUpperBound,
+                                     @Param("cursor") Integer cursor, @Param("limit") int limit);
+}
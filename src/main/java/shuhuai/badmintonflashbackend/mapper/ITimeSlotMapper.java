@@ -1,9 +1,54 @@
 package shuhuai.badmintonflashbackend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import shuhuai.badmintonflashbackend.entity.TimeSlot;
 
+import java.util.List;
+
 @Mapper
 public interface ITimeSlotMapper extends BaseMapper<TimeSlot> {
-}
\ No newline at end of file
+    /**
+     * 多行插入，命中唯一键（日期 + 时间 + 球场 + 场次）的行被忽略
+     * 只有返回值等于入参行数时回填的 id 才可信
+     *
+     * @return 实际插入行数
+     */
+    @Insert({"<script>",
+            "insert ignore into time_slot (slot_date, start_time, end_time, court_id, session_id) values",
+            "<foreach collection='list' item='s' separator=','>",
+            "(#{s.slotDate}, #{s.startTime}, #{s.endTime}, #{s.courtId}, #{s.sessionId})",
+            "</foreach>",
+            "</script>"})
+    @Options(useGeneratedKeys = true, keyProperty = "list.id")
+    int insertIgnoreBatch(@Param("list") List<TimeSlot> slots);
+
+    /**
+     * 恢复按唯一键命中的已逻辑删除 slot
+     */
+    @Update({"<script>",
+            "update time_slot set is_active = 1 where is_active = 0",
+            "and (slot_date, start_time, end_time, court_id, session_id) in",
+            "<foreach collection='list' item='s' open='(' separator=',' close=')'>",
+            "(#{s.slotDate}, #{s.startTime}, #{s.endTime}, #{s.courtId}, #{s.sessionId})",
+            "</foreach>",
+            "</script>"})
+    int restoreBatch(@Param("list") List<TimeSlot> slots);
+
+    /**
+     * 按唯一键批量查询有效 slot
+     */
+    @Select({"<script>",
+            "select id, slot_date, start_time, end_time, court_id, session_id from time_slot where is_active = 1",
+            "and (slot_date, start_time, end_time, court_id, session_id) in",
+            "<foreach collection='list' item='s' open='(' separator=',' close=')'>",
+            "(#{s.slotDate}, #{s.startTime}, #{s.endTime}, #{s.courtId}, #{s.sessionId})",
+            "</foreach>",
+            "</script>"})
+    List<TimeSlot> selectByUniqueKeys(@Param("list") List<TimeSlot> slots);
+}
@@ -0,0 +1,18 @@
+package shuhuai.badmintonflashbackend.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageVO<Type> {
+    private List<Type> items;
+    /**
+     * 下一页游标，没有更多数据时为 null
+     */
+    private Integer nextCursor;
+}
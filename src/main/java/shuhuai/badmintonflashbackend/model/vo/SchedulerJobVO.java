@@ -0,0 +1,27 @@
+package shuhuai.badmintonflashbackend.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulerJobVO {
+    private String job;
+    /**
+     * 作为 leader 执行的次数
+     */
+    private Long runs;
+    /**
+     * 非 leader 跳过的次数
+     */
+    private Long skipped;
+    private Long failures;
+    private Long avgDurationMs;
+    private Long lastDurationMs;
+    private LocalDateTime lastRunTime;
+    private String lastError;
+}
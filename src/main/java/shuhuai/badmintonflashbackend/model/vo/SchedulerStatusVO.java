@@ -0,0 +1,20 @@
+package shuhuai.badmintonflashbackend.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulerStatusVO {
+    private String instanceId;
+    private Boolean leader;
+    /**
+     * 当前持有的 fencing token，非 leader 时为 null
+     */
+    private Long fencingToken;
+    private List<SchedulerJobVO> jobs;
+}
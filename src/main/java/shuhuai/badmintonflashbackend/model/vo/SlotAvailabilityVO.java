@@ -0,0 +1,21 @@
+package shuhuai.badmintonflashbackend.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotAvailabilityVO {
+    private Integer slotId;
+    private Integer courtId;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    /**
+     * 剩余库存，未预热时为 null
+     */
+    private Integer remaining;
+}
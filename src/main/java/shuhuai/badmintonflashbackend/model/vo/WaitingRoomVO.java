@@ -0,0 +1,22 @@
+package shuhuai.badmintonflashbackend.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import shuhuai.badmintonflashbackend.enm.WaitingRoomStatus;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitingRoomVO {
+    private Integer sessionId;
+    private WaitingRoomStatus status;
+    /**
+     * 排队中时的位置，从 1 开始
+     */
+    private Long position;
+    /**
+     * 已放行时的截止时间（毫秒时间戳）
+     */
+    private Long admittedUntil;
+}
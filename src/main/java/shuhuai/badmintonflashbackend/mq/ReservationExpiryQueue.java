@@ -0,0 +1,95 @@
+package shuhuai.badmintonflashbackend.mq;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.utils.RedisScripts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 待支付预约到期队列（Redis ZSET）
+ * 预约落库时入队，score 为创建时间；轮询时按“当前时间 - 支付超时”弹出到期成员，
+ * 支付超时配置变更后对已入队的预约立即生效。
+ */
+@Slf4j
+@Component
+public class ReservationExpiryQueue {
+    private static final String POP_DUE_SCRIPT = "pop_due.lua";
+
+    private final RedissonClient redisson;
+    private final RedisScripts redisScripts;
+
+    public ReservationExpiryQueue(RedissonClient redisson, RedisScripts redisScripts) {
+        this.redisson = redisson;
+        this.redisScripts = redisScripts;
+    }
+
+    /**
+     * 入队，已存在的成员保留原 score（重复投递不会推迟到期）
+     */
+    public void schedule(Collection<Integer> reservationIds) {
+        if (reservationIds == null || reservationIds.isEmpty()) {
+            return;
+        }
+        double createMillis = System.currentTimeMillis();
+        Map<String, Double> members = new LinkedHashMap<>();
+        for (Integer reservationId : reservationIds) {
+            if (reservationId != null) {
+                members.put(reservationId.toString(), createMillis);
+            }
+        }
+        if (members.isEmpty()) {
+            return;
+        }
+        try {
+            queue().addAllIfAbsent(members);
+        } catch (Exception e) {
+            // 入队失败由低频兜底扫描处理，不影响落库
+            log.error("预约到期队列入队失败 reservationIds={}, error={}", reservationIds, e.getMessage());
+        }
+    }
+
+    /**
+     * 原子弹出创建时间不晚于 maxCreateMillis 的成员，fencingToken 已过期（已换主）时不弹出
+     */
+    public List<Integer> popDue(long maxCreateMillis, int limit, long fencingToken) {
+        List<String> members = redisScripts.evalSha(POP_DUE_SCRIPT, RScript.ReturnType.MULTI,
+                List.of(RedisKeys.reserveExpireKey(), RedisKeys.schedulerFencingKey()),
+                String.valueOf(maxCreateMillis), String.valueOf(limit), String.valueOf(fencingToken));
+        List<Integer> reservationIds = new ArrayList<>(members.size());
+        for (String member : members) {
+            try {
+                reservationIds.add(Integer.parseInt(member));
+            } catch (NumberFormatException e) {
+                log.warn("忽略无法解析的到期队列成员 member={}", member);
+            }
+        }
+        return reservationIds;
+    }
+
+    /**
+     * 取消失败时放回队列，下一轮重试
+     */
+    public void requeue(Collection<Integer> reservationIds, long createMillis) {
+        Map<String, Double> members = new LinkedHashMap<>();
+        for (Integer reservationId : reservationIds) {
+            members.put(reservationId.toString(), (double) createMillis);
+        }
+        if (!members.isEmpty()) {
+            queue().addAll(members);
+        }
+    }
+
+    private RScoredSortedSet<String> queue() {
+        return redisson.getScoredSortedSet(RedisKeys.reserveExpireKey(), StringCodec.INSTANCE);
+    }
+}
@@ -2,29 +2,43 @@ package shuhuai.badmintonflashbackend.mq;
 
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RBucket;
-import org.redisson.api.RSemaphore;
-import org.redisson.api.RSet;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.ReturnedMessage;
 import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.cache.ReserveResultCache;
 import shuhuai.badmintonflashbackend.constant.RedisKeys;
 import shuhuai.badmintonflashbackend.enm.ReservationStatus;
 import shuhuai.badmintonflashbackend.entity.Reservation;
 import shuhuai.badmintonflashbackend.mapper.IReservationMapper;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 
+import java.util.Collection;
+
 @Slf4j
 @Component
 public class ReservePublishCallbackHandler {
     private final RedissonClient redisson;
     private final IReservationMapper reservationMapper;
+    private final ReserveNearCache nearCache;
+    private final ISlotStockService slotStockService;
+    private final ReserveResultNotifier resultNotifier;
+    private final ReserveResultCache resultCache;
 
-    public ReservePublishCallbackHandler(RedissonClient redisson, IReservationMapper reservationMapper) {
+    public ReservePublishCallbackHandler(RedissonClient redisson, IReservationMapper reservationMapper,
+                                         ReserveNearCache nearCache, ISlotStockService slotStockService,
+                                         ReserveResultNotifier resultNotifier, ReserveResultCache resultCache) {
         this.redisson = redisson;
         this.reservationMapper = reservationMapper;
+        this.nearCache = nearCache;
+        this.slotStockService = slotStockService;
+        this.resultNotifier = resultNotifier;
+        this.resultCache = resultCache;
     }
 
     public void onConfirm(CorrelationData correlationData, boolean ack, String cause) {
@@ -54,7 +68,7 @@ public class ReservePublishCallbackHandler {
         if (traceId == null || traceId.isEmpty()) {
             return;
         }
-        RBucket<String> pendingBucket = redisson.getBucket(RedisKeys.reservePendingKey(traceId));
+        RBucket<String> pendingBucket = redisson.getBucket(RedisKeys.reservePendingKey(traceId), StringCodec.INSTANCE);
         String pending = pendingBucket.getAndDelete();
         if (pending == null || pending.isEmpty()) {
             return;
@@ -77,24 +91,43 @@ public class ReservePublishCallbackHandler {
             return;
         }
         releaseReserveResource(userId, slotId, traceId, reason);
+        resultCache.putFailed(traceId, userId);
+        resultNotifier.publishFailed(traceId);
     }
 
     public boolean clearPending(String traceId) {
         if (traceId == null || traceId.isEmpty()) {
             return false;
         }
-        Object pending = redisson.getBucket(RedisKeys.reservePendingKey(traceId)).getAndDelete();
-        return pending != null && !String.valueOf(pending).isEmpty();
+        String pending = redisson.<String>getBucket(RedisKeys.reservePendingKey(traceId), StringCodec.INSTANCE)
+                .getAndDelete();
+        return pending != null && !pending.isEmpty();
+    }
+
+    /**
+     * 批量清理 pending 键，一条 DEL 完成
+     */
+    public void clearPending(Collection<String> traceIds) {
+        if (traceIds == null || traceIds.isEmpty()) {
+            return;
+        }
+        String[] keys = traceIds.stream()
+                .filter(traceId -> traceId != null && !traceId.isEmpty())
+                .map(RedisKeys::reservePendingKey)
+                .toArray(String[]::new);
+        if (keys.length == 0) {
+            return;
+        }
+        redisson.getKeys().delete(keys);
     }
 
     public void releaseReserveResource(Integer userId, Integer slotId, String traceId, String reason) {
         if (userId == null || slotId == null) {
             return;
         }
-        RSet<Integer> dedup = redisson.getSet(RedisKeys.dedupKey(slotId));
-        dedup.remove(userId);
-        RSemaphore semaphore = redisson.getSemaphore(RedisKeys.semKey(slotId));
-        semaphore.release();
+        if (slotStockService.release(userId, slotId)) {
+            nearCache.publishSlotAvailable(slotId);
+        }
         log.warn("预约资源回补完成 traceId={}, reason={}, userId={}, slotId={}", traceId, reason, userId, slotId);
     }
 
@@ -0,0 +1,156 @@
+package shuhuai.badmintonflashbackend.mq;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.config.ReservePublishConfig;
+import shuhuai.badmintonflashbackend.config.ReserveShardConfig;
+import shuhuai.badmintonflashbackend.constant.MqNames;
+import shuhuai.badmintonflashbackend.mq.message.ReserveMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预约消息异步发送管道
+ * 请求线程只负责把消息放入有界缓冲区，由后台线程批量取出发送；
+ * confirm/return 结果由 {@link ReservePublishCallbackHandler} 异步处理并补偿。
+ */
+@Slf4j
+@Component
+public class ReservePublisher {
+    private static final long POLL_TIMEOUT_MS = 100L;
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000L;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ReservePublishCallbackHandler publishCallbackHandler;
+    private final ReservePublishConfig publishConfig;
+    private final ReserveShardConfig shardConfig;
+    private final BlockingQueue<ReserveMessage> buffer;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public ReservePublisher(RabbitTemplate rabbitTemplate, ReservePublishCallbackHandler publishCallbackHandler,
+                            ReservePublishConfig publishConfig, ReserveShardConfig shardConfig) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.publishCallbackHandler = publishCallbackHandler;
+        this.publishConfig = publishConfig;
+        this.shardConfig = shardConfig;
+        this.buffer = new ArrayBlockingQueue<>(publishConfig.getBufferSize());
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < publishConfig.getWorkers(); i++) {
+            workers.add(Thread.ofPlatform()
+                    .name("reserve-publisher-" + i)
+                    .daemon(true)
+                    .start(this::drainLoop));
+        }
+    }
+
+    /**
+     * 停止接收新消息，在总时限内等待发送线程排空缓冲区；仍未发出的消息逐条补偿，归还库存与配额
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MS);
+        for (Thread worker : workers) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remainingMs <= 0) {
+                break;
+            }
+            try {
+                worker.join(remainingMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        List<ReserveMessage> remaining = new ArrayList<>();
+        buffer.drainTo(remaining);
+        if (remaining.isEmpty()) {
+            return;
+        }
+        log.warn("预约发送管道停止时仍有 {} 条消息未发送，逐条补偿", remaining.size());
+        for (ReserveMessage message : remaining) {
+            try {
+                publishCallbackHandler.compensateByTraceId(message.getTraceId(), "publisher-shutdown");
+            } catch (Exception e) {
+                log.error("预约发送管道停止补偿失败 traceId={}, error={}", message.getTraceId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 缓冲区是否还有空位，用于在扣库存前快速拒绝
+     */
+    public boolean hasCapacity() {
+        return buffer.remainingCapacity() > 0;
+    }
+
+    /**
+     * 放入发送缓冲区，不阻塞
+     *
+     * @return 缓冲区已满时返回 false
+     */
+    public boolean offer(ReserveMessage message) {
+        return running && buffer.offer(message);
+    }
+
+    private void drainLoop() {
+        List<ReserveMessage> batch = new ArrayList<>(publishConfig.getBatchSize());
+        while (running || !buffer.isEmpty()) {
+            ReserveMessage first;
+            try {
+                first = buffer.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            buffer.drainTo(batch, publishConfig.getBatchSize() - 1);
+            for (ReserveMessage message : batch) {
+                try {
+                    publish(message);
+                } catch (Throwable e) {
+                    // 补偿本身失败（Redis/MySQL 不可用）只影响这一条，发送线程继续工作
+                    log.error("预约消息发送补偿失败 traceId={}, error={}", message.getTraceId(), e.getMessage(), e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void publish(ReserveMessage message) {
+        String traceId = message.getTraceId();
+        try {
+            rabbitTemplate.convertAndSend(
+                    MqNames.RESERVE_EXCHANGE,
+                    MqNames.reserveRoutingKey(shardConfig.shardOf(message.getSlotId())),
+                    message,
+                    rawMessage -> {
+                        rawMessage.getMessageProperties().setMessageId(traceId);
+                        rawMessage.getMessageProperties().setHeader("traceId", traceId);
+                        return rawMessage;
+                    },
+                    new CorrelationData(traceId)
+            );
+        } catch (Exception e) {
+            // 发送阶段异常可判定为失败，执行补偿
+            log.error("预约消息发送失败 traceId={}, error={}", traceId, e.getMessage());
+            publishCallbackHandler.compensateByTraceId(traceId, "async-send-exception");
+        }
+    }
+}
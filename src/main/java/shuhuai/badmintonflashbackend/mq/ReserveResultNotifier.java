@@ -0,0 +1,171 @@
+package shuhuai.badmintonflashbackend.mq;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import shuhuai.badmintonflashbackend.config.ReservePushConfig;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.enm.ReservationStatus;
+import shuhuai.badmintonflashbackend.enm.ReserveResultStatus;
+import shuhuai.badmintonflashbackend.model.vo.ReserveResultVO;
+import shuhuai.badmintonflashbackend.response.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 预约结果推送
+ * 客户端按 traceId 建立 SSE 连接后登记在本实例；消费者落库或发布补偿得出终态时经 Redis 频道广播，
+ * 持有该 traceId 连接的实例推送结果并关闭连接。
+ * 消息格式：{traceId}:{status}:{reservationId}，多条以逗号分隔，批量落库时一次广播。
+ */
+@Slf4j
+@Component
+public class ReserveResultNotifier {
+    private static final String EVENT_NAME = "result";
+
+    private final RedissonClient redisson;
+    private final ReservePushConfig pushConfig;
+    private final Map<String, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    private RTopic topic;
+    private int listenerId = -1;
+
+    public ReserveResultNotifier(RedissonClient redisson, ReservePushConfig pushConfig) {
+        this.redisson = redisson;
+        this.pushConfig = pushConfig;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        topic = redisson.getTopic(RedisKeys.reserveResultChannel(), StringCodec.INSTANCE);
+        listenerId = topic.addListener(String.class, (channel, message) -> onMessage(message));
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (topic != null) {
+            topic.removeListener(listenerId);
+        }
+    }
+
+    /**
+     * 登记连接，调用方需在登记后再查询一次当前结果，避免登记前已出结果而错过广播
+     */
+    public SseEmitter register(String traceId) {
+        SseEmitter emitter = new SseEmitter(pushConfig.getTimeoutMs());
+        emitters.computeIfAbsent(traceId, key -> new CopyOnWriteArrayList<>()).add(emitter);
+        Runnable remove = () -> unregister(traceId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(() -> {
+            remove.run();
+            emitter.complete();
+        });
+        emitter.onError(error -> remove.run());
+        return emitter;
+    }
+
+    public void unregister(String traceId, SseEmitter emitter) {
+        emitters.computeIfPresent(traceId, (key, list) -> {
+            list.remove(emitter);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /**
+     * 向单个连接推送结果；终态推送后关闭连接
+     */
+    public void send(SseEmitter emitter, ReserveResultVO result) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(new Response<>(result)));
+            if (result.getStatus() != ReserveResultStatus.PENDING) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开
+            emitter.completeWithError(e);
+        }
+    }
+
+    public void publishSuccess(String traceId, Integer reservationId) {
+        publish(List.of(format(traceId, ReserveResultStatus.SUCCESS, reservationId)));
+    }
+
+    /**
+     * 批量落库后一次广播
+     */
+    public void publishSuccess(Map<String, Integer> reservationIdByTraceId) {
+        if (reservationIdByTraceId == null || reservationIdByTraceId.isEmpty()) {
+            return;
+        }
+        List<String> entries = new ArrayList<>(reservationIdByTraceId.size());
+        reservationIdByTraceId.forEach((traceId, reservationId) ->
+                entries.add(format(traceId, ReserveResultStatus.SUCCESS, reservationId)));
+        publish(entries);
+    }
+
+    public void publishFailed(String traceId) {
+        publish(List.of(format(traceId, ReserveResultStatus.FAILED, null)));
+    }
+
+    /**
+     * 批量失败一次广播
+     */
+    public void publishFailed(Collection<String> traceIds) {
+        if (traceIds == null || traceIds.isEmpty()) {
+            return;
+        }
+        publish(traceIds.stream().map(traceId -> format(traceId, ReserveResultStatus.FAILED, null)).toList());
+    }
+
+    private void publish(List<String> entries) {
+        try {
+            topic.publish(String.join(",", entries));
+        } catch (Exception e) {
+            // 推送失败时连接超时后客户端回退为查询接口
+            log.warn("预约结果广播失败 size={}, error={}", entries.size(), e.getMessage());
+        }
+    }
+
+    private void onMessage(String message) {
+        if (message == null || message.isEmpty() || emitters.isEmpty()) {
+            return;
+        }
+        for (String entry : message.split(",")) {
+            String[] parts = entry.split(":", -1);
+            if (parts.length != 3) {
+                continue;
+            }
+            List<SseEmitter> targets = emitters.remove(parts[0]);
+            if (targets == null) {
+                continue;
+            }
+            ReserveResultVO result;
+            try {
+                ReserveResultStatus status = ReserveResultStatus.valueOf(parts[1]);
+                Integer reservationId = parts[2].isEmpty() ? null : Integer.parseInt(parts[2]);
+                result = new ReserveResultVO(parts[0], status, reservationId,
+                        reservationId == null ? null : ReservationStatus.PENDING_PAYMENT);
+            } catch (IllegalArgumentException e) {
+                log.warn("无法解析预约结果广播 entry={}", entry);
+                continue;
+            }
+            for (SseEmitter emitter : targets) {
+                send(emitter, result);
+            }
+        }
+    }
+
+    private static String format(String traceId, ReserveResultStatus status, Integer reservationId) {
+        return traceId + ":" + status.name() + ":" + (reservationId == null ? "" : reservationId);
+    }
+}
@@ -2,65 +2,180 @@ package shuhuai.badmintonflashbackend.mq.consumer;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import shuhuai.badmintonflashbackend.constant.MqNames;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.cache.ReserveResultCache;
 import shuhuai.badmintonflashbackend.enm.ReservationStatus;
 import shuhuai.badmintonflashbackend.entity.Reservation;
 import shuhuai.badmintonflashbackend.mapper.IReservationMapper;
+import shuhuai.badmintonflashbackend.mq.ReservationExpiryQueue;
 import shuhuai.badmintonflashbackend.mq.ReservePublishCallbackHandler;
+import shuhuai.badmintonflashbackend.mq.ReserveResultNotifier;
 import shuhuai.badmintonflashbackend.mq.message.ReserveMessage;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @Slf4j
 @Component
 public class ReserveConsumer {
     private final IReservationMapper reservationMapper;
     private final ReservePublishCallbackHandler publishCallbackHandler;
+    private final ReserveNearCache nearCache;
+    private final ReservationExpiryQueue expiryQueue;
+    private final ReserveResultNotifier resultNotifier;
+    private final ReserveResultCache resultCache;
 
     @Autowired
-    public ReserveConsumer(IReservationMapper reservationMapper, ReservePublishCallbackHandler publishCallbackHandler) {
+    public ReserveConsumer(IReservationMapper reservationMapper, ReservePublishCallbackHandler publishCallbackHandler,
+                           ReserveNearCache nearCache, ReservationExpiryQueue expiryQueue,
+                           ReserveResultNotifier resultNotifier, ReserveResultCache resultCache) {
         this.reservationMapper = reservationMapper;
         this.publishCallbackHandler = publishCallbackHandler;
+        this.nearCache = nearCache;
+        this.expiryQueue = expiryQueue;
+        this.resultNotifier = resultNotifier;
+        this.resultCache = resultCache;
     }
 
-    @RabbitListener(queues = MqNames.RESERVE_QUEUE, containerFactory = "rabbitListenerContainerFactory")
+    /**
+     * 单条消费，由 {@link ReserveListenerRegistrar} 按分片注册监听容器
+     */
     public void handle(ReserveMessage message) {
         log.info("收到预约消息: {}", message);
+        long soldOutEpoch = nearCache.soldOutEpoch();
 
         try {
-            Reservation reservation = new Reservation();
-            reservation.setUserId(message.getUserId());
-            reservation.setSlotId(message.getSlotId());
-            reservation.setTraceId(message.getTraceId());
-            reservation.setStatus(ReservationStatus.PENDING_PAYMENT);
+            Reservation reservation = toReservation(message);
             reservationMapper.insert(reservation);
+            // 先写终态结果再删 pending，查询不会出现两者都不存在的空窗
+            resultCache.putSuccess(reservation);
             publishCallbackHandler.clearPending(message.getTraceId());
+            nearCache.markSoldOut(message.getSlotId(), soldOutEpoch);
+            expiryQueue.schedule(List.of(reservation.getId()));
+            resultNotifier.publishSuccess(message.getTraceId(), reservation.getId());
             log.info("预约成功落库 userId={}, slotId={}", message.getUserId(), message.getSlotId());
         } catch (DuplicateKeyException e) {
-            Reservation existed = reservationMapper.selectOne(new LambdaQueryWrapper<Reservation>()
-                    .eq(Reservation::getSlotId, message.getSlotId())
-                    .in(Reservation::getStatus, ReservationStatus.PENDING_PAYMENT, ReservationStatus.CONFIRMED));
-            boolean hadPending = publishCallbackHandler.clearPending(message.getTraceId());
-            if (existed != null && message.getUserId() != null && message.getUserId().equals(existed.getUserId())) {
-                // 同一用户 + 同一 slot：可视为消息重复投递（幂等）
-                log.warn("幂等命中，重复消息已忽略 userId={}, slotId={}", message.getUserId(), message.getSlotId());
-                return;
-            }
-            // 不同用户冲突到同一 slot：这是业务冲突，不是幂等成功
-            if (hadPending) {
-                publishCallbackHandler.releaseReserveResource(
-                        message.getUserId(),
-                        message.getSlotId(),
-                        message.getTraceId(),
-                        "consume-duplicate-conflict");
-            }
-            log.warn("slot 已被占用，消息按业务冲突处理 userId={}, slotId={}", message.getUserId(), message.getSlotId());
+            handleDuplicate(message);
         } catch (Exception e) {
             log.error("预约入库失败: {}", e.getMessage(), e);
             // 可手动重试或丢入死信队列
             throw new RuntimeException("预约入库失败", e);
         }
     }
+
+    /**
+     * 批量消费：一条多行 insert ignore 落库，只对未插入成功的行逐条按冲突处理，pending 键一次性删除
+     */
+    public void handleBatch(List<ReserveMessage> messages) {
+        // 同一批内按 traceId 去重，重复投递的消息只处理一次
+        Map<String, ReserveMessage> byTraceId = new LinkedHashMap<>();
+        for (ReserveMessage message : messages) {
+            if (message == null || message.getTraceId() == null || message.getTraceId().isEmpty()) {
+                continue;
+            }
+            byTraceId.putIfAbsent(message.getTraceId(), message);
+        }
+        if (byTraceId.isEmpty()) {
+            return;
+        }
+        long soldOutEpoch = nearCache.soldOutEpoch();
+        try {
+            reservationMapper.insertIgnoreBatch(byTraceId.values().stream().map(this::toReservation).toList());
+            List<Reservation> persistedRows = reservationMapper.selectList(new LambdaQueryWrapper<Reservation>()
+                    .select(Reservation::getId, Reservation::getUserId, Reservation::getTraceId, Reservation::getStatus)
+                    .in(Reservation::getTraceId, byTraceId.keySet()));
+            Map<String, Integer> persisted = persistedRows.stream()
+                    .collect(Collectors.toMap(Reservation::getTraceId, Reservation::getId));
+            List<String> persistedTraceIds = new ArrayList<>();
+            for (ReserveMessage message : byTraceId.values()) {
+                if (persisted.containsKey(message.getTraceId())) {
+                    persistedTraceIds.add(message.getTraceId());
+                    nearCache.markSoldOut(message.getSlotId(), soldOutEpoch);
+                    continue;
+                }
+                handleRejectedRow(message, soldOutEpoch);
+            }
+            resultCache.putSuccess(persistedRows);
+            publishCallbackHandler.clearPending(persistedTraceIds);
+            expiryQueue.schedule(persisted.values());
+            resultNotifier.publishSuccess(persisted);
+            log.info("预约批量落库完成 received={}, persisted={}", messages.size(), persistedTraceIds.size());
+        } catch (Exception e) {
+            log.error("预约批量入库失败: {}", e.getMessage(), e);
+            throw new RuntimeException("预约批量入库失败", e);
+        }
+    }
+
+    /**
+     * insert ignore 未插入的行：逐条重试一次，真实唯一键冲突按冲突处理，其他错误抛出走重试/死信
+     */
+    private void handleRejectedRow(ReserveMessage message, long soldOutEpoch) {
+        try {
+            Reservation reservation = toReservation(message);
+            reservationMapper.insert(reservation);
+            resultCache.putSuccess(reservation);
+            publishCallbackHandler.clearPending(message.getTraceId());
+            nearCache.markSoldOut(message.getSlotId(), soldOutEpoch);
+            expiryQueue.schedule(List.of(reservation.getId()));
+            resultNotifier.publishSuccess(message.getTraceId(), reservation.getId());
+        } catch (DuplicateKeyException e) {
+            handleDuplicate(message);
+        } catch (DataIntegrityViolationException e) {
+            // 单行数据不合法（如 slot 已删除）重试也不会成功，只补偿这一条，不影响同批其他消息
+            log.error("预约单行入库失败，按失败补偿 traceId={}, userId={}, slotId={}, error={}", message.getTraceId(),
+                    message.getUserId(), message.getSlotId(), e.getMessage());
+            if (publishCallbackHandler.clearPending(message.getTraceId())) {
+                publishCallbackHandler.releaseReserveResource(message.getUserId(), message.getSlotId(),
+                        message.getTraceId(), "consume-integrity-violation");
+            }
+            resultCache.putFailed(message.getTraceId(), message.getUserId());
+            resultNotifier.publishFailed(message.getTraceId());
+        }
+    }
+
+    private void handleDuplicate(ReserveMessage message) {
+        Reservation existed = reservationMapper.selectOne(new LambdaQueryWrapper<Reservation>()
+                .eq(Reservation::getSlotId, message.getSlotId())
+                .in(Reservation::getStatus, ReservationStatus.PENDING_PAYMENT, ReservationStatus.CONFIRMED));
+        boolean hadPending = publishCallbackHandler.clearPending(message.getTraceId());
+        if (existed != null && message.getUserId() != null && message.getUserId().equals(existed.getUserId())) {
+            // 同一用户 + 同一 slot：可视为消息重复投递（幂等）
+            log.warn("幂等命中，重复消息已忽略 userId={}, slotId={}", message.getUserId(), message.getSlotId());
+            if (message.getTraceId() != null && message.getTraceId().equals(existed.getTraceId())) {
+                resultCache.putSuccess(existed);
+                resultNotifier.publishSuccess(message.getTraceId(), existed.getId());
+            } else {
+                resultCache.putFailed(message.getTraceId(), message.getUserId());
+                resultNotifier.publishFailed(message.getTraceId());
+            }
+            return;
+        }
+        // 不同用户冲突到同一 slot：这是业务冲突，不是幂等成功
+        if (hadPending) {
+            publishCallbackHandler.releaseReserveResource(
+                    message.getUserId(),
+                    message.getSlotId(),
+                    message.getTraceId(),
+                    "consume-duplicate-conflict");
+        }
+        resultCache.putFailed(message.getTraceId(), message.getUserId());
+        resultNotifier.publishFailed(message.getTraceId());
+        log.warn("slot 已被占用，消息按业务冲突处理 userId={}, slotId={}", message.getUserId(), message.getSlotId());
+    }
+
+    private Reservation toReservation(ReserveMessage message) {
+        Reservation reservation = new Reservation();
+        reservation.setUserId(message.getUserId());
+        reservation.setSlotId(message.getSlotId());
+        reservation.setTraceId(message.getTraceId());
+        reservation.setStatus(ReservationStatus.PENDING_PAYMENT);
+        return reservation;
+    }
 }
@@ -4,7 +4,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
-import shuhuai.badmintonflashbackend.constant.MqNames;
 import shuhuai.badmintonflashbackend.mq.ReservePublishCallbackHandler;
 import shuhuai.badmintonflashbackend.mq.message.ReserveMessage;
 
@@ -17,7 +16,10 @@ public class ReserveDlqConsumer {
         this.publishCallbackHandler = publishCallbackHandler;
     }
 
-    @RabbitListener(queues = MqNames.RESERVE_DLQ, containerFactory = "rabbitListenerContainerFactory")
+    /**
+     * 消费全部分片死信队列
+     */
+    @RabbitListener(queues = "#{@reserveShardConfig.dlqNames()}", containerFactory = "rabbitListenerContainerFactory")
     public void handleDlq(ReserveMessage message, Message rawMessage) {
         String traceId = null;
         if (message != null) {
@@ -35,6 +37,7 @@ public class ReserveDlqConsumer {
             return;
         }
         publishCallbackHandler.compensateByTraceId(traceId, "dlq-final-fail");
-        log.warn("DLQ 最终失败补偿已执行 traceId={}", traceId);
+        log.warn("DLQ 最终失败补偿已执行 queue={}, traceId={}",
+                rawMessage.getMessageProperties().getConsumerQueue(), traceId);
     }
 }
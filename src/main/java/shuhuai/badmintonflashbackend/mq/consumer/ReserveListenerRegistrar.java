@@ -0,0 +1,65 @@
+package shuhuai.badmintonflashbackend.mq.consumer;
+
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.listener.MethodRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import shuhuai.badmintonflashbackend.config.ReserveConsumerConfig;
+import shuhuai.badmintonflashbackend.config.ReserveShardConfig;
+import shuhuai.badmintonflashbackend.constant.MqNames;
+import shuhuai.badmintonflashbackend.mq.message.ReserveMessage;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * 预约分片队列监听注册
+ * 每个分片一个监听容器且并发固定为 1，保证同一 slot 的消息按投递顺序消费；分片之间并行。
+ */
+@Component
+public class ReserveListenerRegistrar implements RabbitListenerConfigurer {
+    private final ReserveConsumer reserveConsumer;
+    private final ReserveConsumerConfig consumerConfig;
+    private final ReserveShardConfig shardConfig;
+    private final SimpleRabbitListenerContainerFactory singleFactory;
+    private final SimpleRabbitListenerContainerFactory batchFactory;
+
+    public ReserveListenerRegistrar(ReserveConsumer reserveConsumer, ReserveConsumerConfig consumerConfig,
+                                    ReserveShardConfig shardConfig,
+                                    @Qualifier("rabbitListenerContainerFactory")
+                                    SimpleRabbitListenerContainerFactory singleFactory,
+                                    @Qualifier("reserveBatchListenerContainerFactory")
+                                    SimpleRabbitListenerContainerFactory batchFactory) {
+        this.reserveConsumer = reserveConsumer;
+        this.consumerConfig = consumerConfig;
+        this.shardConfig = shardConfig;
+        this.singleFactory = singleFactory;
+        this.batchFactory = batchFactory;
+    }
+
+    @Override
+    public void configureRabbitListeners(@NonNull RabbitListenerEndpointRegistrar registrar) {
+        boolean batch = Boolean.TRUE.equals(consumerConfig.getBatchEnabled());
+        Method method = batch
+                ? ReflectionUtils.findMethod(ReserveConsumer.class, "handleBatch", List.class)
+                : ReflectionUtils.findMethod(ReserveConsumer.class, "handle", ReserveMessage.class);
+        DefaultMessageHandlerMethodFactory handlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+        handlerMethodFactory.afterPropertiesSet();
+        for (int shard = 0; shard < shardConfig.getCount(); shard++) {
+            MethodRabbitListenerEndpoint endpoint = new MethodRabbitListenerEndpoint();
+            endpoint.setId("reserve-shard-" + shard);
+            endpoint.setQueueNames(MqNames.reserveQueue(shard));
+            endpoint.setBean(reserveConsumer);
+            endpoint.setMethod(method);
+            endpoint.setMessageHandlerMethodFactory(handlerMethodFactory);
+            endpoint.setBatchListener(batch);
+            endpoint.setConcurrency("1");
+            registrar.registerEndpoint(endpoint, batch ? batchFactory : singleFactory);
+        }
+    }
+}
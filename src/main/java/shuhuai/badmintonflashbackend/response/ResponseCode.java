@@ -41,6 +41,14 @@ public enum ResponseCode {
 
     OUT_OF_STOCK(4004, "库存不足"),
 
+    SESSION_QUOTA_EXCEEDED(4005, "已达到本场次可预约数量上限"),
+
+    NOT_ADMITTED(4006, "尚未轮到，请先进入等候室排队"),
+
+    LOTTERY_CLOSED(4007, "本场次登记已截止"),
+
+    LOTTERY_INTENT_EXCEEDED(4008, "已达到本场次可登记意向数上限"),
+
     TIME_UNDEVIDED(4444, "时间段无法整除"),
 
     DUP_GEN_SLOT(4556, "时间槽已生成"),
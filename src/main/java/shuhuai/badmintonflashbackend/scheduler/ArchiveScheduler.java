@@ -0,0 +1,76 @@
+package shuhuai.badmintonflashbackend.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.config.ArchiveConfig;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.service.IArchiveService;
+import shuhuai.badmintonflashbackend.utils.DateTimes;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 夜间归档任务：把超过保留期的 slot、预约、支付单分批搬到历史表，控制在线表规模
+ */
+@Slf4j
+@Component
+public class ArchiveScheduler {
+    private final IArchiveService archiveService;
+    private final ArchiveConfig archiveConfig;
+    private final RedissonClient redisson;
+    private final SchedulerLeader schedulerLeader;
+
+    public ArchiveScheduler(IArchiveService archiveService, ArchiveConfig archiveConfig, RedissonClient redisson,
+                            SchedulerLeader schedulerLeader) {
+        this.archiveService = archiveService;
+        this.archiveConfig = archiveConfig;
+        this.redisson = redisson;
+        this.schedulerLeader = schedulerLeader;
+    }
+
+    @Scheduled(cron = "0 30 3 * * ?", zone = "${app.timezone}")
+    public void archiveExpiredData() {
+        schedulerLeader.runIfLeader("archive", this::archive);
+    }
+
+    private void archive() {
+        Long token = schedulerLeader.fencingToken();
+        RLock lock = redisson.getLock(RedisKeys.archiveLockKey());
+        boolean locked;
+        try {
+            locked = lock.tryLock(0, 30, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("归档任务获取锁被中断");
+            return;
+        }
+        if (!locked) {
+            log.info("归档任务被其他实例执行，当前实例跳过");
+            return;
+        }
+        LocalDate cutoff = DateTimes.nowDate().minusDays(archiveConfig.getRetainDays());
+        int total = 0;
+        try {
+            int archived;
+            do {
+                // 每批写库前到 Redis 确认租约仍归本实例；每批单独提交，避免长事务与大范围锁
+                if (token == null || !schedulerLeader.confirm(token)) {
+                    break;
+                }
+                archived = archiveService.archiveBatch(cutoff, archiveConfig.getBatchSize());
+                total += archived;
+            } while (archived >= archiveConfig.getBatchSize());
+            log.info("归档任务完成 cutoff={}, slots={}", cutoff, total);
+        } catch (Exception e) {
+            log.error("归档任务执行失败 cutoff={}, 已归档 slots={}", cutoff, total, e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package shuhuai.badmintonflashbackend.scheduler;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.utils.DateTimes;
+import shuhuai.badmintonflashbackend.utils.RedisScripts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 准点开闸定时器
+ * 每个实例按 gateTime 为已预热场次各挂一个本地定时器，到点执行开闸脚本：
+ * 脚本以 Redis 时间为准把闸门从 0 置为 1，全集群只有一个实例成功并广播开闸，其余实例直接把本地闸门置为已开。
+ * 本地时钟快于 Redis 时按脚本返回的剩余毫秒重新挂定时器。
+ */
+@Slf4j
+@Component
+public class GateOpenTimer {
+    private static final String OPEN_GATE_SCRIPT = "open_gate.lua";
+    private static final long RETRY_DELAY_MS = 100L;
+
+    private final RedissonClient redisson;
+    private final RedisScripts redisScripts;
+    private final ReserveNearCache nearCache;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("gate-open-timer").daemon(true).factory());
+    private final Map<Integer, Armed> armed = new ConcurrentHashMap<>();
+
+    public GateOpenTimer(RedissonClient redisson, RedisScripts redisScripts, ReserveNearCache nearCache) {
+        this.redisson = redisson;
+        this.redisScripts = redisScripts;
+        this.nearCache = nearCache;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一次往返读取场次的闸门与开抢时间，为已预热且未开闸的场次挂定时器
+     */
+    public void armAll(Collection<Integer> sessionIds) {
+        if (sessionIds == null || sessionIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(sessionIds.size() * 2);
+        for (Integer sessionId : sessionIds) {
+            keys.add(RedisKeys.gateKey(sessionId));
+            keys.add(RedisKeys.gateTimeKey(sessionId));
+        }
+        Map<String, String> values = redisson.getBuckets(StringCodec.INSTANCE).get(keys.toArray(String[]::new));
+        for (Integer sessionId : sessionIds) {
+            String gate = values.get(RedisKeys.gateKey(sessionId));
+            String gateTime = values.get(RedisKeys.gateTimeKey(sessionId));
+            if (gate == null || "1".equals(gate) || gateTime == null) {
+                continue;
+            }
+            try {
+                arm(sessionId, Long.parseLong(gateTime) * 1000L);
+            } catch (NumberFormatException e) {
+                log.warn("忽略无法解析的开抢时间 sessionId={}, gateTime={}", sessionId, gateTime);
+            }
+        }
+    }
+
+    /**
+     * 在 openAtMillis 时刻开闸，同一场次同一时刻重复调用不会重复挂定时器
+     */
+    public void arm(Integer sessionId, long openAtMillis) {
+        Armed current = armed.get(sessionId);
+        if (current != null && current.openAtMillis() == openAtMillis && !current.future().isDone()) {
+            return;
+        }
+        schedule(sessionId, openAtMillis, Math.max(openAtMillis - System.currentTimeMillis(), 0L));
+    }
+
+    /**
+     * 立即尝试开闸，未到开抢时间时按剩余时间挂定时器
+     */
+    public void open(Integer sessionId) {
+        List<Long> reply;
+        try {
+            reply = redisScripts.evalSha(OPEN_GATE_SCRIPT, RScript.ReturnType.MULTI,
+                    List.of(RedisKeys.gateKey(sessionId), RedisKeys.gateTimeKey(sessionId)),
+                    String.valueOf(DateTimes.ttlToEndOfTodaySeconds()));
+        } catch (Exception e) {
+            log.error("场次 {} 开闸脚本执行失败，{} ms 后重试: {}", sessionId, RETRY_DELAY_MS, e.getMessage());
+            schedule(sessionId, System.currentTimeMillis() + RETRY_DELAY_MS, RETRY_DELAY_MS);
+            return;
+        }
+        long status = reply.get(0);
+        if (status == 1L) {
+            nearCache.publishGateOpened(sessionId);
+            log.info("已为场次 {} 开闸", sessionId);
+        } else if (status == 0L) {
+            nearCache.markGateOpen(sessionId);
+        } else if (status == -2L) {
+            long waitMs = reply.get(1);
+            schedule(sessionId, System.currentTimeMillis() + waitMs, waitMs);
+        } else {
+            // 未预热：由每分钟的兜底开闸先预热再开闸
+            log.warn("场次 {} 到点时尚未预热，等待兜底开闸", sessionId);
+        }
+    }
+
+    private void schedule(Integer sessionId, long openAtMillis, long delayMs) {
+        ScheduledFuture<?> future = executor.schedule(() -> {
+            armed.remove(sessionId);
+            open(sessionId);
+        }, delayMs, TimeUnit.MILLISECONDS);
+        Armed previous = armed.put(sessionId, new Armed(openAtMillis, future));
+        if (previous != null && previous.future() != future) {
+            previous.future().cancel(false);
+        }
+    }
+
+    private record Armed(long openAtMillis, ScheduledFuture<?> future) {
+    }
+}
@@ -0,0 +1,26 @@
+package shuhuai.badmintonflashbackend.scheduler;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.service.ILotteryService;
+
+@Component
+@ConditionalOnProperty(name = "reserve.mode", havingValue = "lottery")
+public class LotteryAllocateScheduler {
+    private final ILotteryService lotteryService;
+    private final SchedulerLeader schedulerLeader;
+
+    public LotteryAllocateScheduler(ILotteryService lotteryService, SchedulerLeader schedulerLeader) {
+        this.lotteryService = lotteryService;
+        this.schedulerLeader = schedulerLeader;
+    }
+
+    /**
+     * 分配登记窗口已结束的场次，仅 leader 执行
+     */
+    @Scheduled(fixedDelayString = "${reserve.lottery.allocateIntervalMs:1000}")
+    public void allocateDue() {
+        schedulerLeader.runIfLeader("lotteryAllocate", lotteryService::allocateDue);
+    }
+}
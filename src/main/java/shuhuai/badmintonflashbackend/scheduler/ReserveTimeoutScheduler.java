@@ -1,12 +1,14 @@
 package shuhuai.badmintonflashbackend.scheduler;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import shuhuai.badmintonflashbackend.enm.ConfigKey;
+import shuhuai.badmintonflashbackend.config.ReserveExpiryConfig;
 import shuhuai.badmintonflashbackend.enm.ReservationStatus;
 import shuhuai.badmintonflashbackend.entity.Reservation;
 import shuhuai.badmintonflashbackend.mapper.IReservationMapper;
+import shuhuai.badmintonflashbackend.mq.ReservationExpiryQueue;
 import shuhuai.badmintonflashbackend.service.IAdminService;
 import shuhuai.badmintonflashbackend.service.IReserveService;
 import shuhuai.badmintonflashbackend.utils.DateTimes;
@@ -14,31 +16,102 @@ import shuhuai.badmintonflashbackend.utils.DateTimes;
 import java.time.LocalDateTime;
 import java.util.List;
 
+@Slf4j
 @Component
 public class ReserveTimeoutScheduler {
     private final IAdminService adminService;
     private final IReservationMapper reservationMapper;
     private final IReserveService reserveService;
+    private final ReservationExpiryQueue expiryQueue;
+    private final ReserveExpiryConfig expiryConfig;
+    private final SchedulerLeader schedulerLeader;
 
     public ReserveTimeoutScheduler(IAdminService adminService, IReservationMapper reservationMapper,
-                                   IReserveService reserveService) {
+                                   IReserveService reserveService, ReservationExpiryQueue expiryQueue,
+                                   ReserveExpiryConfig expiryConfig, SchedulerLeader schedulerLeader) {
         this.adminService = adminService;
         this.reservationMapper = reservationMapper;
         this.reserveService = reserveService;
+        this.expiryQueue = expiryQueue;
+        this.expiryConfig = expiryConfig;
+        this.schedulerLeader = schedulerLeader;
     }
 
-    @Scheduled(cron = "0 * * * * ?", zone = "${app.timezone}")
+    /**
+     * 从到期队列弹出已超时的预约并批量取消，仅 leader 执行；弹出脚本校验 fencing token，换主后旧 leader 弹不出成员
+     */
+    @Scheduled(fixedDelayString = "${reserve.expiry.pollIntervalMs:1000}")
+    public void cancelDueReservations() {
+        schedulerLeader.runIfLeader("cancelDue", this::cancelDue);
+    }
+
+    private void cancelDue() {
+        Long token = schedulerLeader.fencingToken();
+        int payTimeoutMinute = payTimeoutMinute();
+        if (payTimeoutMinute <= 0) {
+            return;
+        }
+        int batchSize = expiryConfig.getBatchSize();
+        long maxCreateMillis = System.currentTimeMillis() - payTimeoutMinute * 60_000L;
+        while (token != null && schedulerLeader.holds(token)) {
+            List<Integer> reservationIds = expiryQueue.popDue(maxCreateMillis, batchSize, token);
+            if (reservationIds.isEmpty()) {
+                return;
+            }
+            try {
+                int cancelled = reserveService.cancelTimeoutPending(reservationIds);
+                log.info("到期队列批量取消超时预约 popped={}, cancelled={}", reservationIds.size(), cancelled);
+            } catch (Exception e) {
+                // 放回队列，下一轮重试
+                expiryQueue.requeue(reservationIds, maxCreateMillis);
+                log.error("批量取消超时预约失败 reservationIds={}, error={}", reservationIds, e.getMessage());
+                return;
+            }
+            if (reservationIds.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 低频兜底：处理入队失败或 Redis 数据丢失的超时预约
+     */
+    @Scheduled(cron = "0 */10 * * * ?", zone = "${app.timezone}")
     public void cancelTimeoutPendingReservation() {
-        int payTimeoutMinute = Integer.parseInt(adminService.getConfigValue(ConfigKey.PAY_TIMEOUT_MINUTE));
+        schedulerLeader.runIfLeader("cancelTimeoutScan", this::scanTimeoutPending);
+    }
+
+    private void scanTimeoutPending() {
+        Long token = schedulerLeader.fencingToken();
+        int payTimeoutMinute = payTimeoutMinute();
         if (payTimeoutMinute <= 0) {
             return;
         }
         LocalDateTime deadline = DateTimes.now().minusMinutes(payTimeoutMinute);
-        List<Reservation> timeoutPendingReservations = reservationMapper.selectList(new LambdaQueryWrapper<Reservation>()
-                .eq(Reservation::getStatus, ReservationStatus.PENDING_PAYMENT)
-                .le(Reservation::getCreateTime, deadline));
-        for (Reservation reservation : timeoutPendingReservations) {
-            reserveService.cancelTimeoutPending(reservation.getId());
+        int batchSize = expiryConfig.getBatchSize();
+        while (token != null && schedulerLeader.holds(token)) {
+            List<Integer> reservationIds = reservationMapper.selectList(new LambdaQueryWrapper<Reservation>()
+                            .select(Reservation::getId)
+                            .eq(Reservation::getStatus, ReservationStatus.PENDING_PAYMENT)
+                            .le(Reservation::getCreateTime, deadline)
+                            .orderByAsc(Reservation::getId)
+                            .last("limit " + batchSize))
+                    .stream()
+                    .map(Reservation::getId)
+                    .toList();
+            // 写库前到 Redis 确认租约仍归本实例，取消本身按 PENDING_PAYMENT 条件更新，重叠执行也不会重复生效
+            if (reservationIds.isEmpty() || !schedulerLeader.confirm(token)) {
+                return;
+            }
+            int cancelled = reserveService.cancelTimeoutPending(reservationIds);
+            log.info("兜底扫描批量取消超时预约 scanned={}, cancelled={}", reservationIds.size(), cancelled);
+            if (reservationIds.size() < batchSize || cancelled == 0) {
+                return;
+            }
         }
     }
+
+    private int payTimeoutMinute() {
+        return adminService.getConfigSnapshot().payTimeoutMinute();
+    }
 }
@@ -0,0 +1,194 @@
+package shuhuai.badmintonflashbackend.scheduler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.config.SchedulerLeaderConfig;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.model.vo.SchedulerJobVO;
+import shuhuai.badmintonflashbackend.model.vo.SchedulerStatusVO;
+import shuhuai.badmintonflashbackend.utils.DateTimes;
+import shuhuai.badmintonflashbackend.utils.RedisScripts;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 定时任务 leader 选举
+ * 基于 Redis 租约：各实例在独立线程上按固定间隔抢占/续期，持有租约的实例执行 scheduler 包下的定时任务，其他实例跳过。
+ * 每次换主签发递增的 fencing token：写 Redis 的任务把 token 传入 Lua 脚本，与计数器当前值不一致（已换主）时拒绝写入；
+ * 写数据库的任务在每批写入前用 {@link #confirm(long)} 到 Redis 确认租约，数据库写入本身为条件更新或 insert ignore，
+ * 确认后短暂重叠也不会重复生效。本地以“续期发起时刻 + 租约”判断租约是否仍有效，不依赖续期线程的后续结果。
+ */
+@Slf4j
+@Component
+public class SchedulerLeader {
+    private static final String ACQUIRE_SCRIPT = "leader_acquire.lua";
+    private static final String RELEASE_SCRIPT = "leader_release.lua";
+
+    private final RedisScripts redisScripts;
+    private final RedissonClient redisson;
+    private final SchedulerLeaderConfig leaderConfig;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("scheduler-leader").daemon(true).factory());
+    private final Map<String, JobStats> jobStats = new ConcurrentHashMap<>();
+    private volatile Lease lease;
+
+    public SchedulerLeader(RedisScripts redisScripts, RedissonClient redisson, SchedulerLeaderConfig leaderConfig) {
+        this.redisScripts = redisScripts;
+        this.redisson = redisson;
+        this.leaderConfig = leaderConfig;
+    }
+
+    @PostConstruct
+    public void start() {
+        renewer.scheduleWithFixedDelay(this::renew, 0, leaderConfig.getRenewIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停机时主动释放租约，其他实例在下一次抢占时即可接管
+     */
+    @PreDestroy
+    public void stop() {
+        renewer.shutdownNow();
+        Lease current = lease;
+        lease = null;
+        if (current == null) {
+            return;
+        }
+        try {
+            redisScripts.evalSha(RELEASE_SCRIPT, RScript.ReturnType.INTEGER,
+                    List.of(RedisKeys.schedulerLeaderKey()), current.token() + ":" + instanceId);
+        } catch (Exception e) {
+            log.warn("释放定时任务 leader 租约失败，等待租约过期: {}", e.getMessage());
+        }
+    }
+
+    public boolean isLeader() {
+        Lease current = lease;
+        return current != null && System.nanoTime() < current.deadlineNanos();
+    }
+
+    /**
+     * 当前持有的 fencing token，非 leader 时返回 null
+     */
+    public Long fencingToken() {
+        Lease current = lease;
+        return current != null && System.nanoTime() < current.deadlineNanos() ? current.token() : null;
+    }
+
+    /**
+     * 本地判断是否仍以指定 token 持有租约，不访问 Redis
+     */
+    public boolean holds(long token) {
+        Lease current = lease;
+        return current != null && current.token() == token && System.nanoTime() < current.deadlineNanos();
+    }
+
+    /**
+     * 到 Redis 确认租约仍以指定 token 归本实例持有，写数据库的批次在写入前调用
+     */
+    public boolean confirm(long token) {
+        if (!holds(token)) {
+            return false;
+        }
+        try {
+            String current = redisson.<String>getBucket(RedisKeys.schedulerLeaderKey(), StringCodec.INSTANCE).get();
+            return (token + ":" + instanceId).equals(current);
+        } catch (Exception e) {
+            log.warn("确认定时任务 leader 租约失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 仅在本实例为 leader 时执行任务，并记录执行次数、跳过次数、失败次数与耗时
+     */
+    public void runIfLeader(String job, Runnable task) {
+        JobStats stats = jobStats.computeIfAbsent(job, k -> new JobStats());
+        if (!isLeader()) {
+            stats.skipped.increment();
+            return;
+        }
+        long startNanos = System.nanoTime();
+        stats.lastRunTime = DateTimes.now();
+        try {
+            task.run();
+        } catch (Exception e) {
+            stats.failures.increment();
+            stats.lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            log.error("定时任务 {} 执行失败", job, e);
+        } finally {
+            long costMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            stats.runs.increment();
+            stats.totalMs.add(costMs);
+            stats.lastDurationMs = costMs;
+        }
+    }
+
+    public SchedulerStatusVO status() {
+        List<SchedulerJobVO> jobs = jobStats.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> e.getValue().toVO(e.getKey()))
+                .toList();
+        return new SchedulerStatusVO(instanceId, isLeader(), fencingToken(), jobs);
+    }
+
+    private void renew() {
+        long startNanos = System.nanoTime();
+        long leaseMs = leaderConfig.getLeaseMs();
+        Long token;
+        try {
+            token = redisScripts.evalSha(ACQUIRE_SCRIPT, RScript.ReturnType.INTEGER,
+                    List.of(RedisKeys.schedulerLeaderKey(), RedisKeys.schedulerFencingKey()),
+                    instanceId, String.valueOf(leaseMs));
+        } catch (Exception e) {
+            // 续期失败时保留本地租约，到期后自动失去 leader 身份
+            log.warn("定时任务 leader 续期失败: {}", e.getMessage());
+            return;
+        }
+        Lease previous = lease;
+        if (token == null || token < 0) {
+            lease = null;
+            if (previous != null) {
+                log.warn("定时任务 leader 租约已被其他实例接管，token={}", previous.token());
+            }
+            return;
+        }
+        lease = new Lease(token, startNanos + TimeUnit.MILLISECONDS.toNanos(leaseMs));
+        if (previous == null || previous.token() != token) {
+            log.info("本实例成为定时任务 leader，instanceId={}, token={}", instanceId, token);
+        }
+    }
+
+    private record Lease(long token, long deadlineNanos) {
+    }
+
+    private static final class JobStats {
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalMs = new LongAdder();
+        private volatile long lastDurationMs;
+        private volatile LocalDateTime lastRunTime;
+        private volatile String lastError;
+
+        SchedulerJobVO toVO(String job) {
+            long runCount = runs.sum();
+            return new SchedulerJobVO(job, runCount, skipped.sum(), failures.sum(),
+                    runCount == 0 ? 0L : totalMs.sum() / runCount, lastDurationMs, lastRunTime, lastError);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package shuhuai.badmintonflashbackend.scheduler;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.service.IWaitingRoomService;
+
+@Component
+public class WaitingRoomAdmitScheduler {
+    private final IWaitingRoomService waitingRoomService;
+    private final SchedulerLeader schedulerLeader;
+
+    public WaitingRoomAdmitScheduler(IWaitingRoomService waitingRoomService, SchedulerLeader schedulerLeader) {
+        this.waitingRoomService = waitingRoomService;
+        this.schedulerLeader = schedulerLeader;
+    }
+
+    /**
+     * 按剩余库存分批放行等候室里的用户，仅 leader 执行；未启用等候室时不做任何事
+     */
+    @Scheduled(fixedDelayString = "${reserve.waitingRoom.admitIntervalMs:500}")
+    public void admitWaves() {
+        if (!waitingRoomService.isEnabled()) {
+            return;
+        }
+        schedulerLeader.runIfLeader("waitingRoomAdmit", waitingRoomService::admitWaves);
+    }
+}
@@ -4,11 +4,11 @@ import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RBucket;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import shuhuai.badmintonflashbackend.constant.RedisKeys;
-import shuhuai.badmintonflashbackend.enm.ConfigKey;
 import shuhuai.badmintonflashbackend.entity.FlashSession;
 import shuhuai.badmintonflashbackend.mapper.IFlashSessionMapper;
 import shuhuai.badmintonflashbackend.service.IAdminService;
@@ -23,19 +23,28 @@ public class WarmupScheduler {
     private final IFlashSessionMapper sessionMapper;
     private final IAdminService adminService;
     private final RedissonClient redisson;
+    private final GateOpenTimer gateOpenTimer;
+    private final SchedulerLeader schedulerLeader;
 
     @Autowired
-    public WarmupScheduler(IFlashSessionMapper sessionMapper, IAdminService adminService, RedissonClient redisson) {
+    public WarmupScheduler(IFlashSessionMapper sessionMapper, IAdminService adminService, RedissonClient redisson,
+                           GateOpenTimer gateOpenTimer, SchedulerLeader schedulerLeader) {
         this.sessionMapper = sessionMapper;
         this.adminService = adminService;
         this.redisson = redisson;
+        this.gateOpenTimer = gateOpenTimer;
+        this.schedulerLeader = schedulerLeader;
     }
 
 
     @Scheduled(cron = "0 * * * * ?", zone = "${app.timezone}")
     public void warmupNearFutureSlots() {
+        schedulerLeader.runIfLeader("warmup", this::warmup);
+    }
+
+    private void warmup() {
         // 读取提前分钟数（WARMUP_MINUTE）
-        int warmupMinutes = Integer.parseInt(adminService.getConfigValue(ConfigKey.WARMUP_MINUTE));
+        int warmupMinutes = adminService.getConfigSnapshot().warmupMinute();
         LocalTime now = DateTimes.nowMinute();
         LocalTime upper = now.plusMinutes(warmupMinutes);
 
@@ -45,20 +54,26 @@ public class WarmupScheduler {
         for (FlashSession flashSession : flashSessions) {
             adminService.warmupSession(flashSession);
         }
+        // leader 为窗口内已预热的场次挂准点开闸定时器，开闸后广播到各实例
+        gateOpenTimer.armAll(flashSessions.stream().map(FlashSession::getId).toList());
     }
 
     /**
-     * 开闸
+     * 兜底开闸：准点定时器未挂上（如实例重启、预热窗口为 0）时按分钟补开
      */
     @Scheduled(cron = "0 * * * * ?", zone = "${app.timezone}")
     public void openGate() {
+        schedulerLeader.runIfLeader("openGate", this::openDueGates);
+    }
+
+    private void openDueGates() {
         LocalDate today = DateTimes.nowDate();
         LocalTime now = DateTimes.nowTime();
         List<FlashSession> flashSessions = sessionMapper.selectList(Wrappers.<FlashSession>lambdaQuery()
                 .le(FlashSession::getFlashTime, now));
         for (FlashSession flashSession : flashSessions) {
             // 闸门
-            RBucket<String> gate = redisson.getBucket(RedisKeys.gateKey(flashSession.getId()));
+            RBucket<String> gate = redisson.getBucket(RedisKeys.gateKey(flashSession.getId()), StringCodec.INSTANCE);
             if ("1".equals(gate.get())) {
                 continue;
             }
@@ -66,8 +81,7 @@ public class WarmupScheduler {
             if (!isWarmupDone(today, flashSession.getId())) {
                 continue;
             }
-            gate.set("1", Duration.ofSeconds(DateTimes.ttlToEndOfTodaySeconds()));
-            log.info("已为场次 {} 开闸", flashSession.getId());
+            gateOpenTimer.open(flashSession.getId());
         }
     }
 
@@ -1,10 +1,12 @@
 package shuhuai.badmintonflashbackend.service;
 
+import shuhuai.badmintonflashbackend.cache.ConfigSnapshot;
 import shuhuai.badmintonflashbackend.enm.ConfigKey;
 import shuhuai.badmintonflashbackend.entity.FlashSession;
 import shuhuai.badmintonflashbackend.model.dto.ConfigDTO;
 import shuhuai.badmintonflashbackend.model.dto.ConfigItemDTO;
 import shuhuai.badmintonflashbackend.model.dto.FlashSessionDTO;
+import shuhuai.badmintonflashbackend.model.vo.SchedulerStatusVO;
 
 import java.util.List;
 
@@ -17,6 +19,11 @@ public interface IAdminService {
 
     String getConfigValue(ConfigKey configKey);
 
+    /**
+     * 进程内配置快照，不访问数据库
+     */
+    ConfigSnapshot getConfigSnapshot();
+
     void addSession(FlashSessionDTO flashSessionDTO);
 
     void updateSession(Integer id, FlashSessionDTO flashSessionDTO);
@@ -32,4 +39,14 @@ public interface IAdminService {
     void openSession(Integer sessionId);
 
     void generateSlot(Integer sessionId);
+
+    /**
+     * 一次批量生成从今天起 app.slotGen.horizonDays 天内所有场次的 slot，并写入 slot 计划供预热直接使用
+     */
+    void generateSlotHorizon();
+
+    /**
+     * 本实例的定时任务 leader 状态与各任务执行统计
+     */
+    SchedulerStatusVO getSchedulerStatus();
 }
\ No newline at end of file
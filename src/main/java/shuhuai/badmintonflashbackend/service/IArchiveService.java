@@ -0,0 +1,12 @@
+package shuhuai.badmintonflashbackend.service;
+
+import java.time.LocalDate;
+
+public interface IArchiveService {
+    /**
+     * 归档一批 slot_date 早于 cutoff 的 slot 及其预约、支付单
+     *
+     * @return 本批归档的 slot 数，为 0 表示已无可归档数据
+     */
+    int archiveBatch(LocalDate cutoff, int batchSize);
+}
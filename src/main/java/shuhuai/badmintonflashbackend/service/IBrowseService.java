@@ -1,5 +1,6 @@
 package shuhuai.badmintonflashbackend.service;
 
+import shuhuai.badmintonflashbackend.cache.SlotAvailabilityCache;
 import shuhuai.badmintonflashbackend.enm.ReservationStatus;
 import shuhuai.badmintonflashbackend.entity.Court;
 import shuhuai.badmintonflashbackend.entity.FlashSession;
@@ -7,6 +8,7 @@ import shuhuai.badmintonflashbackend.entity.Reservation;
 import shuhuai.badmintonflashbackend.entity.TimeSlot;
 import shuhuai.badmintonflashbackend.model.dto.ConditionBrowseSessionDTO;
 import shuhuai.badmintonflashbackend.model.dto.ConditionBrowseSlotDTO;
+import shuhuai.badmintonflashbackend.model.vo.CursorPageVO;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -25,8 +27,19 @@ public interface IBrowseService {
 
     List<TimeSlot> getSlots(ConditionBrowseSlotDTO conditionBrowseSlotDTO);
 
-    List<Reservation> getReservations(Integer userId, Integer sessionId, Integer slotId, Set<ReservationStatus> statuses,
-                                      LocalDate dateLowerBound, LocalDate dateUpperBound);
+    /**
+     * 场次某日的 slot 余量视图（已序列化，带 ETag）
+     */
+    SlotAvailabilityCache.View getSlotAvailability(Integer sessionId, LocalDate date);
+
+    /**
+     * 用户预约记录游标分页，按 id 倒序
+     *
+     * @param cursor 上一页返回的 nextCursor，首页传 null
+     */
+    CursorPageVO<Reservation> getReservations(Integer userId, Integer sessionId, Integer slotId,
+                                              Set<ReservationStatus> statuses, LocalDate dateLowerBound,
+                                              LocalDate dateUpperBound, Integer cursor, Integer size);
 
     boolean isSessionOpen(Integer sessionId);
 }
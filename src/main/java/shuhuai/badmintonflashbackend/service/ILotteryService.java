@@ -0,0 +1,18 @@
+package shuhuai.badmintonflashbackend.service;
+
+/**
+ * 抽签分配（reserve.mode=lottery）：开闸后窗口期内只登记意向，窗口结束后一次性分配
+ */
+public interface ILotteryService {
+    /**
+     * 登记一条抽签意向，不扣库存
+     *
+     * @return traceId，分配完成前查询结果为 PENDING
+     */
+    String submit(Integer userId, Integer slotId, Integer sessionId);
+
+    /**
+     * 分配所有登记窗口已结束的场次，每个场次只分配一次
+     */
+    void allocateDue();
+}
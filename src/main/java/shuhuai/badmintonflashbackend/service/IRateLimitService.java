@@ -1,7 +1,17 @@
 package shuhuai.badmintonflashbackend.service;
 
-import java.time.Duration;
+import reactor.core.publisher.Mono;
 
 public interface IRateLimitService {
-    boolean tryConsume(String userKey, long capacity, Duration refillDuration);
+    /**
+     * 预约入口限流：用户、客户端 IP、场次全局三个维度，任一维度超限即拒绝
+     *
+     * @param clientIp 取不到时传 null，跳过 IP 维度
+     */
+    boolean tryAcquireReserve(Integer userId, String clientIp, Integer sessionId);
+
+    /**
+     * 同 {@link #tryAcquireReserve}，Redis 判定走响应式客户端，不阻塞调用线程
+     */
+    Mono<Boolean> tryAcquireReserveAsync(Integer userId, String clientIp, Integer sessionId);
 }
@@ -1,13 +1,30 @@
 package shuhuai.badmintonflashbackend.service;
 
+import reactor.core.publisher.Mono;
 import shuhuai.badmintonflashbackend.model.vo.ReserveResultVO;
 
+import java.util.Collection;
+
 public interface IReserveService {
     String reserve(Integer userId, Integer slotId, Integer sessionId);
 
+    /**
+     * 响应式抢占入口，默认包装同步实现；reserve.mode=reactive 时由响应式实现覆盖
+     */
+    default Mono<String> reserveReactive(Integer userId, Integer slotId, Integer sessionId) {
+        return Mono.fromCallable(() -> reserve(userId, slotId, sessionId));
+    }
+
     ReserveResultVO getReserveResult(Integer userId, String traceId);
 
     void cancel(Integer userId, Integer reservationId);
 
     void cancelTimeoutPending(Integer reservationId);
+
+    /**
+     * 批量取消超时未支付的预约，已支付或已取消的自动跳过
+     *
+     * @return 实际取消的数量
+     */
+    int cancelTimeoutPending(Collection<Integer> reservationIds);
 }
@@ -0,0 +1,77 @@
+package shuhuai.badmintonflashbackend.service;
+
+import shuhuai.badmintonflashbackend.entity.FlashSession;
+import reactor.core.publisher.Mono;
+import shuhuai.badmintonflashbackend.entity.TimeSlot;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * slot 库存、场次用户配额与 slot→session 映射在 Redis 中的读写
+ * 按 reserve.keyLayout 选择实现：slot 为每 slot 独立 key，session 为每场次一个 hash/set
+ */
+public interface ISlotStockService {
+    /**
+     * 原子抢占：开闸 -> slot 归属 -> 场次配额 -> 扣库存 -> 写 pending
+     *
+     * @return 1 成功，-1 未开闸，-2 slot 未预热，-3 slot 不属于该 session，-4 已达场次配额，-5 库存不足
+     */
+    Long reserve(Integer userId, Integer slotId, Integer sessionId, String traceId, long pendingTtlSeconds);
+
+    /**
+     * 与 {@link #reserve} 相同的原子抢占，基于响应式客户端，不阻塞调用线程
+     */
+    Mono<Long> reserveReactive(Integer userId, Integer slotId, Integer sessionId, String traceId,
+                               long pendingTtlSeconds);
+
+    /**
+     * 回补场次配额与库存，库存 key 不存在（已过期或已清理）时不回补
+     *
+     * @return 是否归还了库存
+     */
+    boolean release(Integer userId, Integer slotId);
+
+    /**
+     * 批量回补场次配额与库存，一次往返完成
+     *
+     * @return 归还了库存的 slotId
+     */
+    List<Integer> releaseBatch(List<SlotHold> holds);
+
+    /**
+     * 初始化（或只校验）场次下全部 slot 的库存、映射以及场次闸门，一次往返完成
+     */
+    WarmupResult warmup(FlashSession session, LocalDate day, List<TimeSlot> timeSlots, boolean checkOnly);
+
+    /**
+     * 删除 slot 相关的库存与映射，并重置所属场次的用户配额
+     */
+    void cleanup(List<TimeSlot> slots);
+
+    /**
+     * 读取 slot 所属场次，未预热时返回 null
+     */
+    Integer getSlotSession(Integer slotId);
+
+    /**
+     * 一次往返读取场次下多个 slot 的剩余库存，未预热的 slot 不在结果中
+     */
+    Map<Integer, Integer> getRemaining(Integer sessionId, List<Integer> slotIds);
+
+    /**
+     * 用户在某场次某 slot 上占用的一份库存
+     */
+    record SlotHold(Integer userId, Integer slotId, Integer sessionId) {
+    }
+
+    /**
+     * @param gateCreated        闸门是否本次新建
+     * @param complete           场次是否预热完成
+     * @param foreignSlotIndexes 已归属其他场次的 slot 在入参列表中的下标
+     */
+    record WarmupResult(boolean gateCreated, boolean complete, Set<Integer> foreignSlotIndexes) {
+    }
+}
@@ -1,11 +1,22 @@
 package shuhuai.badmintonflashbackend.service;
 
+import shuhuai.badmintonflashbackend.entity.TimeSlot;
+
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 
 public interface ITimeSlotService {
-    void generateForDate(LocalDate date);
+    List<TimeSlot> generateForDate(LocalDate date);
+
+    /**
+     * 为所有场次批量生成多天的 slot，按块多行插入
+     *
+     * @return 生成（或已存在）的 slot，id 已回填
+     */
+    List<TimeSlot> generateForDates(Collection<LocalDate> dates);
 
-    void generateForDate(LocalDate date, Integer sessionId);
+    List<TimeSlot> generateForDate(LocalDate date, Integer sessionId);
 
     void addSessionHandler(Integer sessionId);
 
@@ -0,0 +1,38 @@
+package shuhuai.badmintonflashbackend.service;
+
+import reactor.core.publisher.Mono;
+import shuhuai.badmintonflashbackend.model.vo.WaitingRoomVO;
+
+/**
+ * 开抢前的等候室：用户先排队，按场次剩余库存分批放行，只有已放行的用户可以抢占
+ */
+public interface IWaitingRoomService {
+    boolean isEnabled();
+
+    /**
+     * 进入等候室，已在队中或已放行时返回当前状态
+     */
+    WaitingRoomVO enter(Integer userId, Integer sessionId);
+
+    WaitingRoomVO getStatus(Integer userId, Integer sessionId);
+
+    /**
+     * 用户在该场次的放行是否仍有效，未启用等候室时始终为 true
+     */
+    boolean isAdmitted(Integer userId, Integer sessionId);
+
+    /**
+     * 同 {@link #isAdmitted}，基于响应式客户端
+     */
+    Mono<Boolean> isAdmittedReactive(Integer userId, Integer sessionId);
+
+    /**
+     * 抢占成功后收回放行名额，让下一批尽早放行
+     */
+    void release(Integer userId, Integer sessionId);
+
+    /**
+     * 为已开闸且有人排队的场次放行一批
+     */
+    void admitWaves();
+}
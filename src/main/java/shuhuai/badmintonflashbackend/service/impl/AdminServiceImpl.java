@@ -5,16 +5,20 @@ import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.redisson.api.RBatch;
 import org.redisson.api.RBucket;
 import org.redisson.api.RLock;
-import org.redisson.api.RSemaphore;
-import org.redisson.api.RSet;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import shuhuai.badmintonflashbackend.cache.ConfigCache;
+import shuhuai.badmintonflashbackend.cache.ConfigSnapshot;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.config.SlotGenConfig;
 import shuhuai.badmintonflashbackend.constant.RedisKeys;
 import shuhuai.badmintonflashbackend.enm.ConfigKey;
 import shuhuai.badmintonflashbackend.entity.Config;
@@ -29,20 +33,26 @@ import shuhuai.badmintonflashbackend.mapper.ITimeSlotMapper;
 import shuhuai.badmintonflashbackend.model.dto.ConfigDTO;
 import shuhuai.badmintonflashbackend.model.dto.ConfigItemDTO;
 import shuhuai.badmintonflashbackend.model.dto.FlashSessionDTO;
+import shuhuai.badmintonflashbackend.model.vo.SchedulerStatusVO;
 import shuhuai.badmintonflashbackend.response.ResponseCode;
+import shuhuai.badmintonflashbackend.scheduler.SchedulerLeader;
 import shuhuai.badmintonflashbackend.service.IAdminService;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
 import shuhuai.badmintonflashbackend.service.ITimeSlotService;
 import shuhuai.badmintonflashbackend.utils.DateTimes;
 
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -56,16 +66,28 @@ public class AdminServiceImpl implements IAdminService {
     private final ITimeSlotService timeSlotService;
     private final ITimeSlotMapper timeSlotMapper;
     private final RedissonClient redisson;
+    private final ReserveNearCache nearCache;
+    private final ISlotStockService slotStockService;
+    private final ConfigCache configCache;
+    private final SlotGenConfig slotGenConfig;
+    private final SchedulerLeader schedulerLeader;
 
     @Autowired
     public AdminServiceImpl(IConfigMapper configMapper, ICourtMapper courtMapper, IFlashSessionMapper sessionMapper,
-                            ITimeSlotService timeSlotService, ITimeSlotMapper timeSlotMapper, RedissonClient redisson) {
+                            ITimeSlotService timeSlotService, ITimeSlotMapper timeSlotMapper, RedissonClient redisson,
+                            ReserveNearCache nearCache, ISlotStockService slotStockService, ConfigCache configCache,
+                            SlotGenConfig slotGenConfig, SchedulerLeader schedulerLeader) {
         this.configMapper = configMapper;
         this.courtMapper = courtMapper;
         this.sessionMapper = sessionMapper;
         this.timeSlotService = timeSlotService;
         this.timeSlotMapper = timeSlotMapper;
         this.redisson = redisson;
+        this.nearCache = nearCache;
+        this.slotStockService = slotStockService;
+        this.configCache = configCache;
+        this.slotGenConfig = slotGenConfig;
+        this.schedulerLeader = schedulerLeader;
     }
 
     @Override
@@ -150,6 +172,8 @@ public class AdminServiceImpl implements IAdminService {
         if (changedKeys.isEmpty()) {
             return;
         }
+        // 先于补偿注册，补偿读取到的是新快照
+        configCache.refreshAfterCommit();
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -214,9 +238,12 @@ public class AdminServiceImpl implements IAdminService {
 
     @Override
     public String getConfigValue(ConfigKey configKey) {
-        Config config = configMapper.selectOne(new LambdaQueryWrapper<Config>()
-                .eq(Config::getConfigKey, configKey));
-        return config.getValue();
+        return configCache.get().value(configKey);
+    }
+
+    @Override
+    public ConfigSnapshot getConfigSnapshot() {
+        return configCache.get();
     }
 
     @Override
@@ -237,6 +264,8 @@ public class AdminServiceImpl implements IAdminService {
         validConfigSession(warmupMinutes, generateTime, flashSession);
         sessionMapper.insert(flashSession);
         timeSlotService.addSessionHandler(flashSession.getId());
+        resetSlotHorizon(flashSession.getId());
+        generateSlotHorizon();
     }
 
     @Override
@@ -270,12 +299,15 @@ public class AdminServiceImpl implements IAdminService {
         flashSession.setId(id);
         sessionMapper.updateById(flashSession);
         timeSlotService.updateSessionHandler(id);
+        resetSlotHorizon(id);
+        generateSlotHorizon();
     }
 
     @Override
     public void deleteSession(Integer id) {
         timeSlotService.deleteSessionHandler(id);
         sessionMapper.deleteById(id);
+        resetSlotHorizon(id);
     }
 
     @Override
@@ -294,17 +326,21 @@ public class AdminServiceImpl implements IAdminService {
 
     @Override
     public void warmupSession(FlashSession session) {
-        generateSlot(session.getId());
         LocalDate today = DateTimes.nowDate();
-        long ttlSec = DateTimes.ttlToEndOfTodaySeconds();
-        List<TimeSlot> timeSlots = timeSlotMapper.selectList(new LambdaQueryWrapper<TimeSlot>()
-                .eq(TimeSlot::getSessionId, session.getId())
-                .eq(TimeSlot::getSlotDate, today));
+        // 优先使用预生成时写入的 slot 计划，开抢窗口内不访问数据库
+        List<TimeSlot> timeSlots = loadSlotPlan(today, session.getId());
+        if (timeSlots == null) {
+            generateSlot(session.getId());
+            timeSlots = timeSlotMapper.selectList(new LambdaQueryWrapper<TimeSlot>()
+                    .eq(TimeSlot::getSessionId, session.getId())
+                    .eq(TimeSlot::getSlotDate, today));
+            saveSlotPlans(timeSlots);
+        }
         if (timeSlots.isEmpty()) {
             return;
         }
         RBucket<String> sessionDone = redisson.getBucket(RedisKeys.warmupSessionDoneKey(today, session.getId()));
-        if (sessionDone.isExists() && isSessionWarmupComplete(session.getId(), timeSlots)) {
+        if (sessionDone.isExists() && slotStockService.warmup(session, today, timeSlots, true).complete()) {
             return;
         }
         RLock lock = redisson.getLock(RedisKeys.warmupSessionLockKey(today, session.getId()));
@@ -319,49 +355,25 @@ public class AdminServiceImpl implements IAdminService {
             return;
         }
         try {
-            if (sessionDone.isExists() && isSessionWarmupComplete(session.getId(), timeSlots)) {
-                return;
-            }
-            for (TimeSlot timeSlot : timeSlots) {
-                Integer slotId = timeSlot.getId();
-                RBucket<String> warmFlag = redisson.getBucket(RedisKeys.warmupDoneKey(slotId));
-
-                if (warmFlag.isExists() && isSlotWarmupComplete(slotId, session.getId())) {
-                    continue;
+            // 所有 slot 的 key 初始化与校验在同一脚本内完成，脚本可重复执行，无需再做锁内二次检查
+            long startNanos = System.nanoTime();
+            ISlotStockService.WarmupResult result = slotStockService.warmup(session, today, timeSlots, false);
+            long costMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            List<Integer> ownedSlotIds = new ArrayList<>();
+            for (int i = 0; i < timeSlots.size(); i++) {
+                if (!result.foreignSlotIndexes().contains(i)) {
+                    ownedSlotIds.add(timeSlots.get(i).getId());
                 }
-                RBucket<Integer> slotSession = redisson.getBucket(RedisKeys.slotSessionKey(slotId));
-                if (!slotSession.isExists()) {
-                    slotSession.set(session.getId(), Duration.ofSeconds(ttlSec));
-                }
-                RSemaphore semaphore = redisson.getSemaphore(RedisKeys.semKey(slotId));
-                if (!semaphore.isExists()) {
-                    semaphore.trySetPermits(1);
-                }
-                semaphore.expire(Duration.ofSeconds(ttlSec));
-
-                RSet<Integer> dedup = redisson.getSet(RedisKeys.dedupKey(slotId));
-                if (!dedup.isExists()) {
-                    dedup.add(-1); // 占位，确保 key 存在
-                }
-                dedup.expire(Duration.ofSeconds(ttlSec));
-
-                warmFlag.set("1", Duration.ofSeconds(ttlSec));
-
-
             }
-            RBucket<String> gate = redisson.getBucket(RedisKeys.gateKey(session.getId()));
-            if (!gate.isExists()) {
-                gate.set("0", Duration.ofSeconds(ttlSec));
+            nearCache.putSlotSessions(ownedSlotIds, session.getId());
+            if (result.gateCreated()) {
+                nearCache.publishGateChanged(session.getId());
             }
-
-            long startEpoch = ZonedDateTime
-                    .of(DateTimes.nowDate(), session.getFlashTime(), DateTimes.zone())
-                    .toEpochSecond();
-            RBucket<Long> gateTime = redisson.getBucket(RedisKeys.gateTimeKey(session.getId()));
-            gateTime.set(startEpoch, Duration.ofSeconds(ttlSec));
-            if (isSessionWarmupComplete(session.getId(), timeSlots)) {
-                sessionDone.set("1", Duration.ofSeconds(ttlSec));
+            if (!result.foreignSlotIndexes().isEmpty()) {
+                log.warn("场次 {} 预热时有 {} 个时间槽已归属其他场次", session.getId(), result.foreignSlotIndexes().size());
             }
+            log.info("场次 {} 预热 {} 个时间槽耗时 {} ms，完成={}", session.getId(), timeSlots.size(), costMs,
+                    result.complete());
         } finally {
             if (lock.isHeldByCurrentThread()) {
                 lock.unlock();
@@ -370,36 +382,6 @@ public class AdminServiceImpl implements IAdminService {
         }
     }
 
-    private boolean isSessionWarmupComplete(Integer sessionId, List<TimeSlot> timeSlots) {
-        if (timeSlots == null || timeSlots.isEmpty()) {
-            return false;
-        }
-        for (TimeSlot timeSlot : timeSlots) {
-            if (!isSlotWarmupComplete(timeSlot.getId(), sessionId)) {
-                return false;
-            }
-        }
-        if (!redisson.getBucket(RedisKeys.gateKey(sessionId)).isExists()) {
-            return false;
-        }
-        return redisson.getBucket(RedisKeys.gateTimeKey(sessionId)).isExists();
-    }
-
-    private boolean isSlotWarmupComplete(Integer slotId, Integer sessionId) {
-        RBucket<Integer> slotSession = redisson.getBucket(RedisKeys.slotSessionKey(slotId));
-        Integer cachedSessionId = slotSession.get();
-        if (!sessionId.equals(cachedSessionId)) {
-            return false;
-        }
-        if (!redisson.getBucket(RedisKeys.warmupDoneKey(slotId)).isExists()) {
-            return false;
-        }
-        if (!redisson.getSemaphore(RedisKeys.semKey(slotId)).isExists()) {
-            return false;
-        }
-        return redisson.getSet(RedisKeys.dedupKey(slotId)).isExists();
-    }
-
     @Override
     public void openSession(Integer sessionId) {
         FlashSession session = sessionMapper.selectById(sessionId);
@@ -408,8 +390,9 @@ public class AdminServiceImpl implements IAdminService {
         }
         warmupSession(session);
         long ttlSec = DateTimes.ttlToEndOfTodaySeconds();
-        RBucket<String> gate = redisson.getBucket(RedisKeys.gateKey(session.getId()));
+        RBucket<String> gate = redisson.getBucket(RedisKeys.gateKey(session.getId()), StringCodec.INSTANCE);
         gate.set("1", Duration.ofSeconds(ttlSec));
+        nearCache.publishGateChanged(session.getId());
     }
 
     @Override
@@ -451,6 +434,47 @@ public class AdminServiceImpl implements IAdminService {
         }
     }
 
+    @Override
+    public void generateSlotHorizon() {
+        LocalDate today = DateTimes.nowDate();
+        RBucket<String> done = redisson.getBucket(RedisKeys.slotHorizonDoneKey(today));
+        if (done.isExists()) {
+            return;
+        }
+        RLock lock = redisson.getLock(RedisKeys.slotHorizonLockKey());
+        boolean locked;
+        try {
+            locked = lock.tryLock(0, 300, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!locked) {
+            return;
+        }
+        try {
+            if (done.isExists()) {
+                return;
+            }
+            long startNanos = System.nanoTime();
+            List<LocalDate> days = horizonDays(today);
+            List<TimeSlot> timeSlots = timeSlotService.generateForDates(days);
+            saveSlotPlans(timeSlots);
+            done.set("1", Duration.ofSeconds(Math.max(DateTimes.ttlToEndOfDaySeconds(today), 60L)));
+            log.info("已预生成 {} 天共 {} 个时间槽，耗时 {} ms", days.size(), timeSlots.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public SchedulerStatusVO getSchedulerStatus() {
+        return schedulerLeader.status();
+    }
+
     @Transactional(rollbackFor = Exception.class)
     public void reconcileCourtsByConfigAtStartup() {
         int warmupMinutes;
@@ -466,6 +490,7 @@ public class AdminServiceImpl implements IAdminService {
         validCourtConfig(targetCourtCount, courtNameFormat);
         upsertConfigValue(ConfigKey.COURT_COUNT, String.valueOf(targetCourtCount));
         upsertConfigValue(ConfigKey.COURT_NAME_FORMAT, courtNameFormat);
+        configCache.refreshAfterCommit();
 
         List<Court> currentCourts = getActiveCourtsById();
         boolean countMismatched = currentCourts.size() != targetCourtCount;
@@ -509,12 +534,11 @@ public class AdminServiceImpl implements IAdminService {
     }
 
     private String getConfigStringOrDefault(ConfigKey configKey, String defaultValue) {
-        Config config = configMapper.selectOne(new LambdaQueryWrapper<Config>()
-                .eq(Config::getConfigKey, configKey));
-        if (config == null || config.getValue() == null || config.getValue().isEmpty()) {
+        String value = getConfigValue(configKey);
+        if (value == null || value.isEmpty()) {
             return defaultValue;
         }
-        return config.getValue();
+        return value;
     }
 
     private int countActiveCourts() {
@@ -599,7 +623,9 @@ public class AdminServiceImpl implements IAdminService {
         LocalDate today = DateTimes.nowDate();
         for (FlashSession session : sessions) {
             regenerateTodaySlotsForSession(today, session.getId());
+            resetSlotHorizon(session.getId());
         }
+        generateSlotHorizon();
     }
 
     private void regenerateTodaySlotsForSession(LocalDate day, Integer sessionId) {
@@ -623,9 +649,11 @@ public class AdminServiceImpl implements IAdminService {
                     .eq(TimeSlot::getSlotDate, day));
             cleanupReserveRedisBySlots(oldSlots);
             redisson.getBucket(RedisKeys.slotGenDoneKey(day, sessionId)).delete();
+            redisson.getBucket(RedisKeys.slotPlanKey(day, sessionId)).delete();
             redisson.getBucket(RedisKeys.warmupSessionDoneKey(day, sessionId)).delete();
             redisson.getBucket(RedisKeys.gateKey(sessionId)).delete();
             redisson.getBucket(RedisKeys.gateTimeKey(sessionId)).delete();
+            nearCache.publishGateChanged(sessionId);
             timeSlotService.generateForDate(day, sessionId);
             long ttl = Math.max(DateTimes.ttlToEndOfDaySeconds(day), 60L);
             redisson.getBucket(RedisKeys.slotGenDoneKey(day, sessionId)).set("1", Duration.ofSeconds(ttl));
@@ -636,20 +664,94 @@ public class AdminServiceImpl implements IAdminService {
         }
     }
 
-    private void cleanupReserveRedisBySlots(List<TimeSlot> slots) {
-        if (slots == null || slots.isEmpty()) {
+    private List<LocalDate> horizonDays(LocalDate today) {
+        int horizon = Math.max(slotGenConfig.getHorizonDays(), 1);
+        List<LocalDate> days = new ArrayList<>(horizon);
+        for (int i = 0; i < horizon; i++) {
+            days.add(today.plusDays(i));
+        }
+        return days;
+    }
+
+    /**
+     * 按日期 + 场次写入 slot 计划与生成完成标记，过期时间到当日结束
+     */
+    private void saveSlotPlans(List<TimeSlot> timeSlots) {
+        Map<LocalDate, Map<Integer, List<TimeSlot>>> grouped = timeSlots.stream()
+                .collect(Collectors.groupingBy(TimeSlot::getSlotDate, TreeMap::new,
+                        Collectors.groupingBy(TimeSlot::getSessionId, LinkedHashMap::new, Collectors.toList())));
+        if (grouped.isEmpty()) {
             return;
         }
-        for (TimeSlot slot : slots) {
-            if (slot == null || slot.getId() == null) {
-                continue;
+        RBatch batch = redisson.createBatch();
+        grouped.forEach((day, bySession) -> {
+            Duration ttl = Duration.ofSeconds(Math.max(DateTimes.ttlToEndOfDaySeconds(day), 60L));
+            bySession.forEach((sessionId, slots) -> {
+                if (slots.stream().anyMatch(slot -> slot.getId() == null)) {
+                    // id 未知时不写计划，预热回退到查库
+                    return;
+                }
+                String plan = slots.stream().map(slot -> slot.getId().toString()).collect(Collectors.joining(","));
+                batch.getBucket(RedisKeys.slotPlanKey(day, sessionId), StringCodec.INSTANCE).setAsync(plan, ttl);
+                batch.getBucket(RedisKeys.slotGenDoneKey(day, sessionId)).setAsync("1", ttl);
+            });
+        });
+        batch.execute();
+    }
+
+    /**
+     * 读取 slot 计划，不存在或无法解析时返回 null
+     */
+    private List<TimeSlot> loadSlotPlan(LocalDate day, Integer sessionId) {
+        String plan = redisson.<String>getBucket(RedisKeys.slotPlanKey(day, sessionId), StringCodec.INSTANCE).get();
+        if (plan == null || plan.isEmpty()) {
+            return null;
+        }
+        List<TimeSlot> timeSlots = new ArrayList<>();
+        for (String slotId : plan.split(",")) {
+            TimeSlot timeSlot = new TimeSlot();
+            try {
+                timeSlot.setId(Integer.parseInt(slotId));
+            } catch (NumberFormatException e) {
+                log.warn("忽略无法解析的 slot 计划 day={}, sessionId={}", day, sessionId);
+                return null;
+            }
+            timeSlot.setSlotDate(day);
+            timeSlot.setSessionId(sessionId);
+            timeSlots.add(timeSlot);
+        }
+        return timeSlots;
+    }
+
+    /**
+     * 场次或球场变更后：逻辑删除该场次未来日期已预生成的 slot（尚未预热，不涉及 Redis 库存），
+     * 清掉窗口内的 slot 计划与生成标记，下一次预生成按最新配置重建
+     */
+    private void resetSlotHorizon(Integer sessionId) {
+        LocalDate today = DateTimes.nowDate();
+        timeSlotMapper.delete(new LambdaQueryWrapper<TimeSlot>()
+                .eq(TimeSlot::getSessionId, sessionId)
+                .gt(TimeSlot::getSlotDate, today));
+        RBatch batch = redisson.createBatch();
+        for (LocalDate day : horizonDays(today)) {
+            batch.getBucket(RedisKeys.slotPlanKey(day, sessionId)).deleteAsync();
+            if (day.isAfter(today)) {
+                batch.getBucket(RedisKeys.slotGenDoneKey(day, sessionId)).deleteAsync();
             }
-            Integer slotId = slot.getId();
-            redisson.getBucket(RedisKeys.slotSessionKey(slotId)).delete();
-            redisson.getSemaphore(RedisKeys.semKey(slotId)).delete();
-            redisson.getSet(RedisKeys.dedupKey(slotId)).delete();
-            redisson.getBucket(RedisKeys.warmupDoneKey(slotId)).delete();
         }
+        batch.getBucket(RedisKeys.slotHorizonDoneKey(today)).deleteAsync();
+        batch.execute();
+    }
+
+    private void cleanupReserveRedisBySlots(List<TimeSlot> slots) {
+        if (slots == null || slots.isEmpty()) {
+            return;
+        }
+        slotStockService.cleanup(slots);
+        nearCache.publishSlotsChanged(slots.stream()
+                .filter(slot -> slot != null && slot.getId() != null)
+                .map(TimeSlot::getId)
+                .toList());
     }
 
     private boolean isCourtNameMismatched(List<Court> courts, String courtNameFormat, int courtCount) {
@@ -0,0 +1,41 @@
+package shuhuai.badmintonflashbackend.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import shuhuai.badmintonflashbackend.mapper.IArchiveMapper;
+import shuhuai.badmintonflashbackend.service.IArchiveService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Slf4j
+@Service
+public class ArchiveServiceImpl implements IArchiveService {
+    private final IArchiveMapper archiveMapper;
+
+    @Autowired
+    public ArchiveServiceImpl(IArchiveMapper archiveMapper) {
+        this.archiveMapper = archiveMapper;
+    }
+
+    @Override
+    @Transactional
+    public int archiveBatch(LocalDate cutoff, int batchSize) {
+        List<Integer> slotIds = archiveMapper.selectSlotIdsBefore(cutoff, batchSize);
+        if (slotIds.isEmpty()) {
+            return 0;
+        }
+        // 先复制再删除，同一事务内完成；insert ignore 保证中断后重跑不会重复
+        archiveMapper.copyPayOrders(slotIds);
+        int payOrders = archiveMapper.deletePayOrders(slotIds);
+        archiveMapper.copyReservations(slotIds);
+        int reservations = archiveMapper.deleteReservations(slotIds);
+        archiveMapper.copyTimeSlots(slotIds);
+        int slots = archiveMapper.deleteTimeSlots(slotIds);
+        log.info("归档一批历史数据 cutoff={}, slots={}, reservations={}, payOrders={}",
+                cutoff, slots, reservations, payOrders);
+        return slotIds.size();
+    }
+}
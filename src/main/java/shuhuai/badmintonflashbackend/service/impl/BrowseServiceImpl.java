@@ -1,10 +1,10 @@
 package shuhuai.badmintonflashbackend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import org.redisson.api.RBucket;
-import org.redisson.api.RedissonClient;
 import org.springframework.stereotype.Service;
-import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.cache.SlotAvailabilityCache;
+import shuhuai.badmintonflashbackend.config.SlotGenConfig;
 import shuhuai.badmintonflashbackend.enm.ReservationStatus;
 import shuhuai.badmintonflashbackend.entity.Court;
 import shuhuai.badmintonflashbackend.entity.FlashSession;
@@ -17,30 +17,40 @@ import shuhuai.badmintonflashbackend.mapper.IReservationMapper;
 import shuhuai.badmintonflashbackend.mapper.ITimeSlotMapper;
 import shuhuai.badmintonflashbackend.model.dto.ConditionBrowseSessionDTO;
 import shuhuai.badmintonflashbackend.model.dto.ConditionBrowseSlotDTO;
+import shuhuai.badmintonflashbackend.model.vo.CursorPageVO;
 import shuhuai.badmintonflashbackend.response.ResponseCode;
 import shuhuai.badmintonflashbackend.service.IBrowseService;
+import shuhuai.badmintonflashbackend.utils.DateTimes;
 
 import java.time.LocalDate;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
 @Service
 public class BrowseServiceImpl implements IBrowseService {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final IFlashSessionMapper sessionMapper;
     private final ICourtMapper courtMapper;
     private final ITimeSlotMapper timeSlotMapper;
     private final IReservationMapper reservationMapper;
-    private final RedissonClient redisson;
+    private final ReserveNearCache nearCache;
+    private final SlotAvailabilityCache availabilityCache;
+    private final SlotGenConfig slotGenConfig;
 
 
     public BrowseServiceImpl(IFlashSessionMapper sessionMapper, ICourtMapper courtMapper, ITimeSlotMapper timeSlotMapper,
-                             IReservationMapper reservationMapper, RedissonClient redisson) {
+                             IReservationMapper reservationMapper, ReserveNearCache nearCache,
+                             SlotAvailabilityCache availabilityCache, SlotGenConfig slotGenConfig) {
         this.sessionMapper = sessionMapper;
         this.courtMapper = courtMapper;
         this.timeSlotMapper = timeSlotMapper;
         this.reservationMapper = reservationMapper;
-        this.redisson = redisson;
+        this.nearCache = nearCache;
+        this.availabilityCache = availabilityCache;
+        this.slotGenConfig = slotGenConfig;
     }
 
     @Override
@@ -102,31 +112,39 @@ public class BrowseServiceImpl implements IBrowseService {
     }
 
     @Override
-    public List<Reservation> getReservations(Integer userId, Integer sessionId, Integer slotId, Set<ReservationStatus> statuses,
-                                             LocalDate dateLowerBound, LocalDate dateUpperBound) {
-        LambdaQueryWrapper<Reservation> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Reservation::getUserId, userId);
-        List<Integer> slotIds;
-        if (slotId != null) {
-            slotIds = List.of(slotId);
-        } else {
-            slotIds = timeSlotMapper.selectList(new LambdaQueryWrapper<TimeSlot>()
-                    .eq(sessionId != null, TimeSlot::getSessionId, sessionId)
-                    .ge(dateLowerBound != null, TimeSlot::getSlotDate, dateLowerBound)
-                    .le(dateUpperBound != null, TimeSlot::getSlotDate, dateUpperBound)
-                    .select(TimeSlot::getId)).stream().map(TimeSlot::getId).toList();
+    public SlotAvailabilityCache.View getSlotAvailability(Integer sessionId, LocalDate date) {
+        if (sessionId == null) {
+            throw new BaseException(ResponseCode.PARAM_ERROR);
+        }
+        // 只接受预生成窗口内的日期与已存在的场次，视图数量以场次数 × 窗口天数为上限
+        LocalDate today = DateTimes.nowDate();
+        LocalDate day = date == null ? today : date;
+        if (day.isBefore(today) || !day.isBefore(today.plusDays(slotGenConfig.getHorizonDays()))) {
+            throw new BaseException(ResponseCode.PARAM_ERROR);
+        }
+        if (!availabilityCache.contains(sessionId, day) && sessionMapper.selectById(sessionId) == null) {
+            throw new BaseException(ResponseCode.PARAM_ERROR);
         }
-        if (slotIds.isEmpty()) {
-            return Collections.emptyList();
+        return availabilityCache.get(sessionId, day);
+    }
+
+    @Override
+    public CursorPageVO<Reservation> getReservations(Integer userId, Integer sessionId, Integer slotId,
+                                                     Set<ReservationStatus> statuses, LocalDate dateLowerBound,
+                                                     LocalDate dateUpperBound, Integer cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        // 多取一条判断是否还有下一页
+        List<Reservation> rows = reservationMapper.selectUserPage(userId, sessionId, slotId, statuses,
+                dateLowerBound, dateUpperBound, cursor, pageSize + 1);
+        if (rows.size() <= pageSize) {
+            return new CursorPageVO<>(rows, null);
         }
-        queryWrapper.in(Reservation::getSlotId, slotIds);
-        queryWrapper.in(statuses != null, Reservation::getStatus, statuses);
-        return reservationMapper.selectList(queryWrapper);
+        List<Reservation> items = rows.subList(0, pageSize);
+        return new CursorPageVO<>(new ArrayList<>(items), items.getLast().getId());
     }
 
     @Override
     public boolean isSessionOpen(Integer sessionId) {
-        RBucket<String> gate = redisson.getBucket(RedisKeys.gateKey(sessionId));
-        return "1".equals(gate.get());
+        return nearCache.isGateOpen(sessionId);
     }
 }
@@ -0,0 +1,422 @@
+package shuhuai.badmintonflashbackend.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucket;
+import org.redisson.api.RMapAsync;
+import org.redisson.api.RScript;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.cache.ReserveResultCache;
+import shuhuai.badmintonflashbackend.config.ReserveLotteryConfig;
+import shuhuai.badmintonflashbackend.config.ReserveQuotaConfig;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.enm.ReservationStatus;
+import shuhuai.badmintonflashbackend.entity.Reservation;
+import shuhuai.badmintonflashbackend.entity.TimeSlot;
+import shuhuai.badmintonflashbackend.excep.BaseException;
+import shuhuai.badmintonflashbackend.mapper.IReservationMapper;
+import shuhuai.badmintonflashbackend.mapper.ITimeSlotMapper;
+import shuhuai.badmintonflashbackend.mq.ReservationExpiryQueue;
+import shuhuai.badmintonflashbackend.mq.ReservePublishCallbackHandler;
+import shuhuai.badmintonflashbackend.mq.ReserveResultNotifier;
+import shuhuai.badmintonflashbackend.response.ResponseCode;
+import shuhuai.badmintonflashbackend.service.ILotteryService;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
+import shuhuai.badmintonflashbackend.utils.DateTimes;
+import shuhuai.badmintonflashbackend.utils.RedisScripts;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "reserve.mode", havingValue = "lottery")
+public class LotteryServiceImpl implements ILotteryService {
+    private static final String INTENT_SCRIPT = "lottery_intent.lua";
+    private static final long PENDING_TTL_SECONDS = 300L;
+    /**
+     * 窗口结束后再等几秒才分配，容忍实例与 Redis 之间的时钟偏差
+     */
+    private static final long ALLOCATE_DELAY_SECONDS = 2L;
+    /**
+     * 分配租约时长，持有者中途宕机时租约过期后由下一轮接手恢复
+     */
+    private static final long ALLOCATE_LEASE_SECONDS = 300L;
+    private static final String MARKER_RUNNING = "running";
+    private static final String MARKER_DONE = "done";
+
+    private final RedissonClient redisson;
+    private final RedisScripts redisScripts;
+    private final ReserveLotteryConfig lotteryConfig;
+    private final ReserveQuotaConfig quotaConfig;
+    private final ISlotStockService slotStockService;
+    private final IReservationMapper reservationMapper;
+    private final ITimeSlotMapper timeSlotMapper;
+    private final ReservePublishCallbackHandler publishCallbackHandler;
+    private final ReserveResultCache resultCache;
+    private final ReserveResultNotifier resultNotifier;
+    private final ReservationExpiryQueue expiryQueue;
+    private final ReserveNearCache nearCache;
+
+    @Autowired
+    public LotteryServiceImpl(RedissonClient redisson, RedisScripts redisScripts, ReserveLotteryConfig lotteryConfig,
+                              ReserveQuotaConfig quotaConfig, ISlotStockService slotStockService,
+                              IReservationMapper reservationMapper, ITimeSlotMapper timeSlotMapper,
+                              ReservePublishCallbackHandler publishCallbackHandler, ReserveResultCache resultCache,
+                              ReserveResultNotifier resultNotifier, ReservationExpiryQueue expiryQueue,
+                              ReserveNearCache nearCache) {
+        this.redisson = redisson;
+        this.redisScripts = redisScripts;
+        this.lotteryConfig = lotteryConfig;
+        this.quotaConfig = quotaConfig;
+        this.slotStockService = slotStockService;
+        this.reservationMapper = reservationMapper;
+        this.timeSlotMapper = timeSlotMapper;
+        this.publishCallbackHandler = publishCallbackHandler;
+        this.resultCache = resultCache;
+        this.resultNotifier = resultNotifier;
+        this.expiryQueue = expiryQueue;
+        this.nearCache = nearCache;
+    }
+
+    private record Intent(Integer userId, Integer slotId, String traceId) {
+        String encode() {
+            return userId + ":" + slotId + ":" + traceId;
+        }
+    }
+
+    @Override
+    public String submit(Integer userId, Integer slotId, Integer sessionId) {
+        String traceId = UUID.randomUUID().toString();
+        // pending 覆盖登记窗口与分配耗时，分配完成后统一清理
+        long pendingTtlSeconds = lotteryConfig.getWindowSeconds() + PENDING_TTL_SECONDS;
+        Long code = redisScripts.evalSha(INTENT_SCRIPT, RScript.ReturnType.INTEGER,
+                List.of(RedisKeys.gateKey(sessionId), RedisKeys.gateTimeKey(sessionId),
+                        RedisKeys.lotteryIntentKey(sessionId), RedisKeys.lotteryUserIntentKey(sessionId),
+                        RedisKeys.lotterySessionsKey(), RedisKeys.reservePendingKey(traceId)),
+                userId.toString(), userId + ":" + slotId + ":" + traceId,
+                String.valueOf(lotteryConfig.getWindowSeconds()), String.valueOf(lotteryConfig.getMaxIntentsPerUser()),
+                sessionId.toString(), String.valueOf(DateTimes.ttlToEndOfTodaySeconds()),
+                userId + ":" + slotId, String.valueOf(pendingTtlSeconds));
+        if (code == null) {
+            throw new BaseException(ResponseCode.FAILED);
+        }
+        switch (code.intValue()) {
+            case 1:
+                return traceId;
+            case -1:
+                throw new BaseException(ResponseCode.UNGATED);
+            case -2:
+                throw new BaseException(ResponseCode.LOTTERY_CLOSED);
+            case -3:
+                throw new BaseException(ResponseCode.LOTTERY_INTENT_EXCEEDED);
+            default:
+                throw new BaseException(ResponseCode.FAILED);
+        }
+    }
+
+    @Override
+    public void allocateDue() {
+        Set<String> sessionIds = redisson.<String>getSet(RedisKeys.lotterySessionsKey(), StringCodec.INSTANCE)
+                .readAll();
+        long nowSeconds = System.currentTimeMillis() / 1000L;
+        for (String value : sessionIds) {
+            Integer sessionId;
+            try {
+                sessionId = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                log.warn("忽略无法解析的抽签场次 sessionId={}", value);
+                continue;
+            }
+            String gateTime = redisson.<String>getBucket(RedisKeys.gateTimeKey(sessionId), StringCodec.INSTANCE).get();
+            if (gateTime != null
+                    && nowSeconds < Long.parseLong(gateTime) + lotteryConfig.getWindowSeconds() + ALLOCATE_DELAY_SECONDS) {
+                continue;
+            }
+            allocate(sessionId);
+        }
+    }
+
+    private void allocate(Integer sessionId) {
+        RBucket<String> marker = redisson.getBucket(RedisKeys.lotteryDoneKey(sessionId), StringCodec.INSTANCE);
+        if (MARKER_DONE.equals(marker.get())) {
+            redisson.getSet(RedisKeys.lotterySessionsKey(), StringCodec.INSTANCE).remove(sessionId.toString());
+            return;
+        }
+        // 分配租约：进行中或上一轮中途宕机时租约未过期，本轮跳过；租约过期后从已扣库存记录恢复
+        if (!marker.setIfAbsent(MARKER_RUNNING, Duration.ofSeconds(ALLOCATE_LEASE_SECONDS))) {
+            return;
+        }
+        try {
+            allocateLeased(sessionId);
+            marker.set(MARKER_DONE, Duration.ofSeconds(DateTimes.ttlToEndOfTodaySeconds()));
+        } catch (RuntimeException e) {
+            // 释放租约，下一轮先按已扣库存记录回滚或补完，再继续分配
+            marker.delete();
+            throw e;
+        }
+    }
+
+    private void allocateLeased(Integer sessionId) {
+        long startMillis = System.currentTimeMillis();
+        long soldOutEpoch = nearCache.soldOutEpoch();
+        List<Intent> intents = readIntents(sessionId);
+        Map<Integer, List<Intent>> preferences = new LinkedHashMap<>();
+        for (Intent intent : intents) {
+            List<Intent> userPreferences = preferences.computeIfAbsent(intent.userId(), k -> new ArrayList<>());
+            // 同一用户重复登记同一 slot 只保留第一条，其余按未中签处理
+            if (userPreferences.stream().noneMatch(p -> p.slotId().equals(intent.slotId()))) {
+                userPreferences.add(intent);
+            }
+        }
+        List<Reservation> persisted = recoverTaken(sessionId);
+        if (persisted == null) {
+            Map<Integer, Integer> remaining =
+                    new HashMap<>(slotStockService.getRemaining(sessionId, slotIds(sessionId)));
+            List<Intent> winners = assign(drawOrder(preferences.keySet()), preferences, remaining);
+            persisted = persist(sessionId, winners);
+        }
+
+        Set<String> winningTraceIds = persisted.stream().map(Reservation::getTraceId).collect(Collectors.toSet());
+        Set<Integer> winnerUserIds = persisted.stream().map(Reservation::getUserId).collect(Collectors.toSet());
+        Map<String, Integer> losers = new LinkedHashMap<>();
+        for (Intent intent : intents) {
+            if (!winningTraceIds.contains(intent.traceId())) {
+                losers.put(intent.traceId(), intent.userId());
+            }
+        }
+        // 先写终态结果再删 pending，查询不会出现两者都不存在的空窗；以下写入都可重复执行
+        resultCache.putSuccess(persisted);
+        resultCache.putFailed(losers);
+        publishCallbackHandler.clearPending(intents.stream().map(Intent::traceId).toList());
+        expiryQueue.schedule(persisted.stream().map(Reservation::getId).toList());
+        resultNotifier.publishSuccess(persisted.stream()
+                .collect(Collectors.toMap(Reservation::getTraceId, Reservation::getId)));
+        resultNotifier.publishFailed(losers.keySet());
+        for (Reservation reservation : persisted) {
+            nearCache.markSoldOut(reservation.getSlotId(), soldOutEpoch);
+        }
+        updateLossStreaks(preferences.keySet(), winnerUserIds);
+
+        redisson.getKeys().delete(RedisKeys.lotteryIntentKey(sessionId), RedisKeys.lotteryUserIntentKey(sessionId),
+                RedisKeys.lotteryTakenKey(sessionId));
+        redisson.getSet(RedisKeys.lotterySessionsKey(), StringCodec.INSTANCE).remove(sessionId.toString());
+        log.info("场次 {} 抽签分配完成 intents={}, users={}, winners={}, costMs={}", sessionId, intents.size(),
+                preferences.size(), persisted.size(), System.currentTimeMillis() - startMillis);
+    }
+
+    /**
+     * 处理上一轮失败留下的已扣库存记录
+     * 已有中签记录落库：上一轮已提交，沿用落库结果补完后续步骤；
+     * 没有落库：归还全部已扣库存与配额，清空记录后重新抽签。
+     *
+     * @return 上一轮已落库的中签记录，无需恢复或已回滚时返回 null
+     */
+    private List<Reservation> recoverTaken(Integer sessionId) {
+        RSet<String> takenSet = taken(sessionId);
+        List<Intent> taken = parseIntents(takenSet.readAll());
+        if (taken.isEmpty()) {
+            return null;
+        }
+        List<Reservation> persisted = selectByTraceIds(taken.stream().map(Intent::traceId).toList());
+        if (!persisted.isEmpty()) {
+            Set<String> persistedTraceIds = persisted.stream().map(Reservation::getTraceId).collect(Collectors.toSet());
+            for (Intent intent : taken) {
+                if (!persistedTraceIds.contains(intent.traceId())) {
+                    releaseTaken(takenSet, intent, "lottery-recover-unpersisted");
+                }
+            }
+            log.warn("场次 {} 抽签从上一轮中断处恢复 persisted={}", sessionId, persisted.size());
+            return persisted;
+        }
+        for (Intent intent : taken) {
+            releaseTaken(takenSet, intent, "lottery-recover-rollback");
+        }
+        log.warn("场次 {} 抽签上一轮未落库，已归还 {} 份库存后重新分配", sessionId, taken.size());
+        return null;
+    }
+
+    private List<Intent> readIntents(Integer sessionId) {
+        return parseIntents(redisson.<String>getList(RedisKeys.lotteryIntentKey(sessionId), StringCodec.INSTANCE)
+                .readAll());
+    }
+
+    private List<Intent> parseIntents(Collection<String> values) {
+        List<Intent> intents = new ArrayList<>(values.size());
+        for (String value : values) {
+            String[] parts = value.split(":", 3);
+            try {
+                intents.add(new Intent(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), parts[2]));
+            } catch (RuntimeException e) {
+                log.warn("忽略无法解析的抽签意向 value={}", value);
+            }
+        }
+        return intents;
+    }
+
+    private List<Integer> slotIds(Integer sessionId) {
+        return timeSlotMapper.selectList(new LambdaQueryWrapper<TimeSlot>()
+                        .select(TimeSlot::getId)
+                        .eq(TimeSlot::getSessionId, sessionId)
+                        .eq(TimeSlot::getSlotDate, DateTimes.nowDate()))
+                .stream()
+                .map(TimeSlot::getId)
+                .toList();
+    }
+
+    /**
+     * 按权重不放回抽出用户顺序：每人取 -ln(U)/权重，越小越靠前；连续未中签的用户权重更高
+     */
+    private List<Integer> drawOrder(Collection<Integer> userIds) {
+        Set<String> fields = userIds.stream().map(String::valueOf).collect(Collectors.toSet());
+        Map<String, String> streaks = redisson.<String, String>getMap(RedisKeys.lotteryLossKey(), StringCodec.INSTANCE)
+                .getAll(fields);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Integer, Double> keys = new HashMap<>(userIds.size() * 2);
+        for (Integer userId : userIds) {
+            double weight = 1.0 + lotteryConfig.getLossBonus() * lossStreak(streaks.get(userId.toString()));
+            keys.put(userId, -Math.log(1.0 - random.nextDouble()) / weight);
+        }
+        List<Integer> order = new ArrayList<>(userIds);
+        order.sort(Comparator.comparingDouble(keys::get));
+        return order;
+    }
+
+    private int lossStreak(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.min((int) Double.parseDouble(value), lotteryConfig.getMaxLossStreak());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 按抽签顺序分轮分配：每轮每人最多一个，取其偏好中第一个仍有库存的 slot，共 perSession 轮
+     */
+    private List<Intent> assign(List<Integer> order, Map<Integer, List<Intent>> preferences,
+                                Map<Integer, Integer> remaining) {
+        Map<Integer, Integer> cursors = new HashMap<>(order.size() * 2);
+        List<Intent> winners = new ArrayList<>();
+        for (int round = 0; round < quotaConfig.getPerSession(); round++) {
+            boolean assigned = false;
+            for (Integer userId : order) {
+                List<Intent> userPreferences = preferences.get(userId);
+                int cursor = cursors.getOrDefault(userId, 0);
+                while (cursor < userPreferences.size()
+                        && remaining.getOrDefault(userPreferences.get(cursor).slotId(), 0) <= 0) {
+                    cursor++;
+                }
+                if (cursor < userPreferences.size()) {
+                    Intent intent = userPreferences.get(cursor);
+                    remaining.merge(intent.slotId(), -1, Integer::sum);
+                    winners.add(intent);
+                    assigned = true;
+                    cursor++;
+                }
+                cursors.put(userId, cursor);
+            }
+            if (!assigned) {
+                break;
+            }
+        }
+        return winners;
+    }
+
+    /**
+     * 中签者逐个扣 Redis 库存与配额（单线程执行，无竞争），再一条多行 insert ignore 落库
+     */
+    private List<Reservation> persist(Integer sessionId, List<Intent> winners) {
+        RSet<String> takenSet = taken(sessionId);
+        List<Reservation> rows = new ArrayList<>(winners.size());
+        for (Intent winner : winners) {
+            Long code = slotStockService.reserve(winner.userId(), winner.slotId(), sessionId, winner.traceId(),
+                    PENDING_TTL_SECONDS);
+            if (code == null || code != 1L) {
+                log.warn("抽签中签扣库存失败 userId={}, slotId={}, code={}", winner.userId(), winner.slotId(), code);
+                continue;
+            }
+            // 先记录已扣库存再落库，本轮中途失败时下一轮据此回滚或补完
+            takenSet.add(winner.encode());
+            Reservation reservation = new Reservation();
+            reservation.setUserId(winner.userId());
+            reservation.setSlotId(winner.slotId());
+            reservation.setTraceId(winner.traceId());
+            reservation.setStatus(ReservationStatus.PENDING_PAYMENT);
+            rows.add(reservation);
+        }
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        reservationMapper.insertIgnoreBatch(rows);
+        List<Reservation> persisted = selectByTraceIds(rows.stream().map(Reservation::getTraceId).toList());
+        Set<String> persistedTraceIds = persisted.stream().map(Reservation::getTraceId).collect(Collectors.toSet());
+        for (Reservation row : rows) {
+            if (!persistedTraceIds.contains(row.getTraceId())) {
+                // slot 已有有效预约（如分配前人工占用），归还刚扣的库存与配额
+                releaseTaken(takenSet, new Intent(row.getUserId(), row.getSlotId(), row.getTraceId()),
+                        "lottery-insert-conflict");
+            }
+        }
+        return persisted;
+    }
+
+    private List<Reservation> selectByTraceIds(List<String> traceIds) {
+        return reservationMapper.selectList(new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getId, Reservation::getUserId, Reservation::getSlotId, Reservation::getTraceId,
+                        Reservation::getStatus)
+                .in(Reservation::getTraceId, traceIds));
+    }
+
+    private RSet<String> taken(Integer sessionId) {
+        return redisson.getSet(RedisKeys.lotteryTakenKey(sessionId), StringCodec.INSTANCE);
+    }
+
+    /**
+     * 先摘除记录再归还，摘除成功才归还，重复恢复不会多还库存
+     */
+    private void releaseTaken(RSet<String> takenSet, Intent intent, String reason) {
+        if (takenSet.remove(intent.encode())) {
+            publishCallbackHandler.releaseReserveResource(intent.userId(), intent.slotId(), intent.traceId(), reason);
+        }
+    }
+
+    /**
+     * 中签用户清零，未中签用户连续未中签次数加 1，一次往返
+     */
+    private void updateLossStreaks(Collection<Integer> userIds, Set<Integer> winnerUserIds) {
+        RBatch batch = redisson.createBatch();
+        RMapAsync<String, String> streaks = batch.getMap(RedisKeys.lotteryLossKey(), StringCodec.INSTANCE);
+        for (Integer userId : userIds) {
+            if (winnerUserIds.contains(userId)) {
+                streaks.fastRemoveAsync(userId.toString());
+            } else {
+                streaks.addAndGetAsync(userId.toString(), 1);
+            }
+        }
+        try {
+            batch.execute();
+        } catch (Exception e) {
+            log.warn("抽签未中签次数更新失败 error={}", e.getMessage());
+        }
+    }
+}
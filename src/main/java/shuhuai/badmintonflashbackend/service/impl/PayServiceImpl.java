@@ -4,14 +4,13 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
-import org.redisson.api.RSemaphore;
-import org.redisson.api.RSet;
 import org.redisson.api.RedissonClient;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import shuhuai.badmintonflashbackend.cache.ConfigSnapshot;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
 import shuhuai.badmintonflashbackend.config.WechatPayConfig;
 import shuhuai.badmintonflashbackend.constant.RedisKeys;
-import shuhuai.badmintonflashbackend.enm.ConfigKey;
 import shuhuai.badmintonflashbackend.enm.PayChannel;
 import shuhuai.badmintonflashbackend.enm.PayOrderStatus;
 import shuhuai.badmintonflashbackend.enm.ReservationStatus;
@@ -25,6 +24,7 @@ import shuhuai.badmintonflashbackend.model.vo.WechatPayCreateVO;
 import shuhuai.badmintonflashbackend.response.ResponseCode;
 import shuhuai.badmintonflashbackend.service.IAdminService;
 import shuhuai.badmintonflashbackend.service.IPayService;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
 import shuhuai.badmintonflashbackend.utils.DateTimes;
 
 import java.math.BigDecimal;
@@ -45,15 +45,19 @@ public class PayServiceImpl implements IPayService {
     private final IAdminService adminService;
     private final WechatPayConfig wechatPayConfig;
     private final RedissonClient redisson;
+    private final ReserveNearCache nearCache;
+    private final ISlotStockService slotStockService;
 
     public PayServiceImpl(IPayOrderMapper payOrderMapper, IReservationMapper reservationMapper,
                           IAdminService adminService, WechatPayConfig wechatPayConfig,
-                          RedissonClient redisson) {
+                          RedissonClient redisson, ReserveNearCache nearCache, ISlotStockService slotStockService) {
         this.payOrderMapper = payOrderMapper;
         this.reservationMapper = reservationMapper;
         this.adminService = adminService;
         this.wechatPayConfig = wechatPayConfig;
         this.redisson = redisson;
+        this.nearCache = nearCache;
+        this.slotStockService = slotStockService;
     }
 
     @Override
@@ -99,15 +103,14 @@ public class PayServiceImpl implements IPayService {
                 }
             }
 
-            int timeoutMinute = Integer.parseInt(adminService.getConfigValue(ConfigKey.PAY_TIMEOUT_MINUTE));
-            LocalDateTime expireTime = DateTimes.now().plusMinutes(timeoutMinute);
-            String outTradeNo = "WX" + System.currentTimeMillis() + UUID.randomUUID().toString().replace("-", "").substring(0, 8);
-            BigDecimal amount;
-            try {
-                amount = new BigDecimal(adminService.getConfigValue(ConfigKey.PAY_AMOUNT));
-            } catch (Exception e) {
+            ConfigSnapshot config = adminService.getConfigSnapshot();
+            Integer timeoutMinute = config.payTimeoutMinute();
+            BigDecimal amount = config.payAmount();
+            if (timeoutMinute == null || amount == null) {
                 throw new BaseException(ResponseCode.PARAM_ERROR);
             }
+            LocalDateTime expireTime = DateTimes.now().plusMinutes(timeoutMinute);
+            String outTradeNo = "WX" + System.currentTimeMillis() + UUID.randomUUID().toString().replace("-", "").substring(0, 8);
             if (amount.compareTo(BigDecimal.ZERO) <= 0) {
                 throw new BaseException(ResponseCode.PARAM_ERROR);
             }
@@ -230,11 +233,8 @@ public class PayServiceImpl implements IPayService {
             throw new BaseException(ResponseCode.FAILED);
         }
 
-        RSet<Integer> dedup = redisson.getSet(RedisKeys.dedupKey(reservation.getSlotId()));
-        dedup.remove(userId);
-        RSemaphore sem = redisson.getSemaphore(RedisKeys.semKey(reservation.getSlotId()));
-        if (sem.isExists()) {
-            sem.release();
+        if (slotStockService.release(userId, reservation.getSlotId())) {
+            nearCache.publishSlotAvailable(reservation.getSlotId());
         }
     }
 
@@ -1,47 +1,128 @@
 package shuhuai.badmintonflashbackend.service.impl;
 
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.BucketConfiguration;
-import io.github.bucket4j.Refill;
-import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
-import io.github.bucket4j.distributed.proxy.CommandExecutor;
-import io.github.bucket4j.distributed.proxy.ProxyManager;
-import io.github.bucket4j.distributed.serialization.Mapper;
-import io.github.bucket4j.redis.redisson.Bucket4jRedisson;
-import io.github.bucket4j.redis.redisson.cas.RedissonBasedProxyManager;
-import org.redisson.Redisson;
-import org.redisson.api.RedissonClient;
-import org.redisson.command.CommandAsyncExecutor;
+import org.redisson.api.RScript;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import shuhuai.badmintonflashbackend.cache.LocalRateLimiter;
+import shuhuai.badmintonflashbackend.config.ReserveRateLimitConfig;
 import shuhuai.badmintonflashbackend.constant.RedisKeys;
 import shuhuai.badmintonflashbackend.service.IRateLimitService;
+import shuhuai.badmintonflashbackend.utils.RedisScripts;
 
-import java.time.Duration;
-import java.util.function.Supplier;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * 两级限流：用户与 IP 先过本地令牌桶，本实例内已超限的直接拒绝；
+ * 通过的请求再由 rate_limit.lua 在一次往返内对用户、IP、场次全局三个桶一起判定并扣减。
+ * 脚本在任一桶不足时不扣减任何桶，此时归还本地令牌，本地桶只记 Redis 放行过的尝试。
+ */
 @Service
 public class RateLimitServiceImpl implements IRateLimitService {
-    private final ProxyManager<String> buckets;
+    private static final String RATE_LIMIT_SCRIPT = "rate_limit.lua";
+
+    private final RedisScripts redisScripts;
+    private final LocalRateLimiter localRateLimiter;
+    private final ReserveRateLimitConfig rateLimitConfig;
 
     @Autowired
-    public RateLimitServiceImpl(RedissonClient redisson) {
-        this.buckets = Bucket4jRedisson
-                .casBasedBuilder(((Redisson) redisson).getCommandExecutor())
-                .keyMapper(Mapper.STRING)
-                .build();
+    public RateLimitServiceImpl(RedisScripts redisScripts, LocalRateLimiter localRateLimiter,
+                                ReserveRateLimitConfig rateLimitConfig) {
+        this.redisScripts = redisScripts;
+        this.localRateLimiter = localRateLimiter;
+        this.rateLimitConfig = rateLimitConfig;
+    }
+
+    @Override
+    public boolean tryAcquireReserve(Integer userId, String clientIp, Integer sessionId) {
+        if (!tryAcquireLocal(userId, clientIp)) {
+            return false;
+        }
+        List<Object> keys = new ArrayList<>(3);
+        List<Object> args = new ArrayList<>(6);
+        addBuckets(userId, clientIp, sessionId, keys, args);
+        if (keys.isEmpty()) {
+            return true;
+        }
+        Long code;
+        try {
+            code = redisScripts.evalSha(RATE_LIMIT_SCRIPT, RScript.ReturnType.INTEGER, keys, args.toArray());
+        } catch (RuntimeException e) {
+            refundLocal(userId, clientIp);
+            throw e;
+        }
+        boolean allowed = code != null && code == 0L;
+        if (!allowed) {
+            refundLocal(userId, clientIp);
+        }
+        return allowed;
     }
 
     @Override
-    public boolean tryConsume(String userKey, long capacity, Duration refillDuration) {
-        BucketConfiguration config = BucketConfiguration.builder()
-                .addLimit(limit ->
-                        limit.capacity(capacity).refillGreedy(capacity, refillDuration))
-                .build();
-
-        // 想要 "limit:" 前缀，直接在 key 上传入即可
-        Bucket bucket = buckets.getProxy(RedisKeys.limitKey(userKey), () -> config);
-        return bucket.tryConsume(1);
+    public Mono<Boolean> tryAcquireReserveAsync(Integer userId, String clientIp, Integer sessionId) {
+        if (!tryAcquireLocal(userId, clientIp)) {
+            return Mono.just(false);
+        }
+        List<Object> keys = new ArrayList<>(3);
+        List<Object> args = new ArrayList<>(6);
+        addBuckets(userId, clientIp, sessionId, keys, args);
+        if (keys.isEmpty()) {
+            return Mono.just(true);
+        }
+        return redisScripts.<Long>evalShaReactive(RATE_LIMIT_SCRIPT, RScript.ReturnType.INTEGER, keys, args.toArray())
+                .map(code -> code == 0L)
+                .doOnNext(allowed -> {
+                    if (!allowed) {
+                        refundLocal(userId, clientIp);
+                    }
+                })
+                .doOnError(e -> refundLocal(userId, clientIp));
+    }
+
+    /**
+     * 先扣用户再扣 IP，IP 拒绝时归还用户令牌，两个本地桶要么都扣要么都不扣
+     */
+    private boolean tryAcquireLocal(Integer userId, String clientIp) {
+        String userKey = RedisKeys.limitKey(userId.toString());
+        if (!localRateLimiter.tryConsume(userKey, rateLimitConfig.getUserCapacity(), rateLimitConfig.getUserPeriodMs())) {
+            return false;
+        }
+        if (clientIp != null && !localRateLimiter.tryConsume(RedisKeys.ipLimitKey(clientIp),
+                rateLimitConfig.getIpCapacity(), rateLimitConfig.getIpPeriodMs())) {
+            localRateLimiter.refund(userKey);
+            return false;
+        }
+        return true;
+    }
+
+    private void refundLocal(Integer userId, String clientIp) {
+        localRateLimiter.refund(RedisKeys.limitKey(userId.toString()));
+        if (clientIp != null) {
+            localRateLimiter.refund(RedisKeys.ipLimitKey(clientIp));
+        }
+    }
+
+    /**
+     * 组装要判定的桶，容量为 0 的维度不参与
+     */
+    private void addBuckets(Integer userId, String clientIp, Integer sessionId, List<Object> keys, List<Object> args) {
+        addBucket(keys, args, RedisKeys.limitKey(userId.toString()),
+                rateLimitConfig.getUserCapacity(), rateLimitConfig.getUserPeriodMs());
+        if (clientIp != null) {
+            addBucket(keys, args, RedisKeys.ipLimitKey(clientIp),
+                    rateLimitConfig.getIpCapacity(), rateLimitConfig.getIpPeriodMs());
+        }
+        addBucket(keys, args, RedisKeys.sessionLimitKey(sessionId),
+                rateLimitConfig.getSessionCapacity(), rateLimitConfig.getSessionPeriodMs());
+    }
+
+    private static void addBucket(List<Object> keys, List<Object> args, String key, long capacity, long periodMs) {
+        if (capacity <= 0 || periodMs <= 0) {
+            return;
+        }
+        keys.add(key);
+        args.add(String.valueOf(capacity));
+        args.add(String.valueOf(periodMs));
     }
 }
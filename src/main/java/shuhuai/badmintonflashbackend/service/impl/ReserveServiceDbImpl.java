@@ -19,10 +19,13 @@ import shuhuai.badmintonflashbackend.mapper.IPayOrderMapper;
 import shuhuai.badmintonflashbackend.mapper.IReservationMapper;
 import shuhuai.badmintonflashbackend.mapper.ITimeSlotMapper;
 import shuhuai.badmintonflashbackend.model.vo.ReserveResultVO;
+import shuhuai.badmintonflashbackend.mq.ReservationExpiryQueue;
 import shuhuai.badmintonflashbackend.response.ResponseCode;
 import shuhuai.badmintonflashbackend.service.IReserveService;
 import shuhuai.badmintonflashbackend.utils.DateTimes;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -32,13 +35,16 @@ public class ReserveServiceDbImpl implements IReserveService {
     private final IFlashSessionMapper flashSessionMapper;
     private final IReservationMapper reservationMapper;
     private final IPayOrderMapper payOrderMapper;
+    private final ReservationExpiryQueue expiryQueue;
 
     public ReserveServiceDbImpl(ITimeSlotMapper timeSlotMapper, IFlashSessionMapper flashSessionMapper,
-                                IReservationMapper reservationMapper, IPayOrderMapper payOrderMapper) {
+                                IReservationMapper reservationMapper, IPayOrderMapper payOrderMapper,
+                                ReservationExpiryQueue expiryQueue) {
         this.timeSlotMapper = timeSlotMapper;
         this.flashSessionMapper = flashSessionMapper;
         this.reservationMapper = reservationMapper;
         this.payOrderMapper = payOrderMapper;
+        this.expiryQueue = expiryQueue;
     }
 
     @Override
@@ -79,6 +85,7 @@ public class ReserveServiceDbImpl implements IReserveService {
 
         try {
             reservationMapper.insert(reservation);
+            expiryQueue.schedule(List.of(reservation.getId()));
             return traceId;
         } catch (DuplicateKeyException e) {
             Reservation existed = reservationMapper.selectOne(new LambdaQueryWrapper<Reservation>()
@@ -147,18 +154,35 @@ public class ReserveServiceDbImpl implements IReserveService {
         if (reservationId == null) {
             return;
         }
-        Reservation reservation = reservationMapper.selectById(reservationId);
-        if (reservation == null || reservation.getStatus() != ReservationStatus.PENDING_PAYMENT) {
-            return;
-        }
-        int updated = reservationMapper.update(null, new LambdaUpdateWrapper<Reservation>()
+        cancelTimeoutPending(List.of(reservationId));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int cancelTimeoutPending(Collection<Integer> reservationIds) {
+        if (reservationIds == null || reservationIds.isEmpty()) {
+            return 0;
+        }
+        List<Integer> ids = reservationMapper.selectList(new LambdaQueryWrapper<Reservation>()
+                        .select(Reservation::getId)
+                        .in(Reservation::getId, reservationIds)
+                        .eq(Reservation::getStatus, ReservationStatus.PENDING_PAYMENT)
+                        .last("for update"))
+                .stream()
+                .map(Reservation::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        reservationMapper.update(null, new LambdaUpdateWrapper<Reservation>()
                 .set(Reservation::getStatus, ReservationStatus.CANCELLED)
-                .eq(Reservation::getId, reservationId)
+                .in(Reservation::getId, ids)
                 .eq(Reservation::getStatus, ReservationStatus.PENDING_PAYMENT));
-        if (updated <= 0) {
-            return;
-        }
-        closePayingOrders(reservationId);
+        payOrderMapper.update(null, new LambdaUpdateWrapper<PayOrder>()
+                .set(PayOrder::getStatus, PayOrderStatus.CLOSED)
+                .in(PayOrder::getReservationId, ids)
+                .eq(PayOrder::getStatus, PayOrderStatus.PAYING));
+        return ids.size();
     }
 
     private void closePayingOrders(Integer reservationId) {
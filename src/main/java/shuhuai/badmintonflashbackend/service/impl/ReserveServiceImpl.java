@@ -2,144 +2,152 @@ package shuhuai.badmintonflashbackend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
-import org.redisson.api.RBucket;
-import org.redisson.api.RSemaphore;
-import org.redisson.api.RSet;
-import org.redisson.api.RedissonClient;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import shuhuai.badmintonflashbackend.constant.MqNames;
-import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.cache.ReserveResultCache;
 import shuhuai.badmintonflashbackend.enm.PayOrderStatus;
 import shuhuai.badmintonflashbackend.enm.ReservationStatus;
 import shuhuai.badmintonflashbackend.enm.ReserveResultStatus;
 import shuhuai.badmintonflashbackend.entity.PayOrder;
 import shuhuai.badmintonflashbackend.entity.Reservation;
+import shuhuai.badmintonflashbackend.entity.TimeSlot;
 import shuhuai.badmintonflashbackend.excep.BaseException;
 import shuhuai.badmintonflashbackend.mapper.IPayOrderMapper;
 import shuhuai.badmintonflashbackend.mapper.IReservationMapper;
+import shuhuai.badmintonflashbackend.mapper.ITimeSlotMapper;
 import shuhuai.badmintonflashbackend.mq.ReservePublishCallbackHandler;
+import shuhuai.badmintonflashbackend.mq.ReservePublisher;
 import shuhuai.badmintonflashbackend.mq.message.ReserveMessage;
 import shuhuai.badmintonflashbackend.model.vo.ReserveResultVO;
 import shuhuai.badmintonflashbackend.response.ResponseCode;
 import shuhuai.badmintonflashbackend.service.IRateLimitService;
 import shuhuai.badmintonflashbackend.service.IReserveService;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
+import shuhuai.badmintonflashbackend.service.IWaitingRoomService;
+import shuhuai.badmintonflashbackend.utils.RequestGetter;
 
-import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.TimeoutException;
-import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 @ConditionalOnProperty(name = "reserve.mode", havingValue = "redis", matchIfMissing = true)
 public class ReserveServiceImpl implements IReserveService {
-    private static final long PUBLISH_CONFIRM_TIMEOUT_MS = 3000L;
-    private static final long PENDING_TTL_SECONDS = 300L;
+    protected static final long PENDING_TTL_SECONDS = 300L;
 
-    private final RedissonClient redisson;
-    private final IRateLimitService rateLimitService;
-    private final RabbitTemplate rabbitTemplate;
-    private final ReservePublishCallbackHandler publishCallbackHandler;
+    protected final IRateLimitService rateLimitService;
+    protected final ReservePublisher reservePublisher;
+    protected final ReservePublishCallbackHandler publishCallbackHandler;
     private final IReservationMapper reservationMapper;
     private final IPayOrderMapper payOrderMapper;
+    private final ITimeSlotMapper timeSlotMapper;
+    protected final ISlotStockService slotStockService;
+    protected final ReserveNearCache nearCache;
+    private final ReserveResultCache resultCache;
+    protected final IWaitingRoomService waitingRoomService;
 
     @Autowired
-    public ReserveServiceImpl(RedissonClient redisson, IRateLimitService rateLimitService,
-                              RabbitTemplate rabbitTemplate, ReservePublishCallbackHandler publishCallbackHandler,
-                              IReservationMapper reservationMapper, IPayOrderMapper payOrderMapper) {
-        this.redisson = redisson;
+    public ReserveServiceImpl(IRateLimitService rateLimitService, ReservePublisher reservePublisher,
+                              ReservePublishCallbackHandler publishCallbackHandler,
+                              IReservationMapper reservationMapper, IPayOrderMapper payOrderMapper,
+                              ITimeSlotMapper timeSlotMapper, ISlotStockService slotStockService,
+                              ReserveNearCache nearCache, ReserveResultCache resultCache,
+                              IWaitingRoomService waitingRoomService) {
         this.rateLimitService = rateLimitService;
-        this.rabbitTemplate = rabbitTemplate;
+        this.reservePublisher = reservePublisher;
         this.publishCallbackHandler = publishCallbackHandler;
         this.reservationMapper = reservationMapper;
         this.payOrderMapper = payOrderMapper;
+        this.timeSlotMapper = timeSlotMapper;
+        this.slotStockService = slotStockService;
+        this.nearCache = nearCache;
+        this.resultCache = resultCache;
+        this.waitingRoomService = waitingRoomService;
     }
 
     @Override
     public String reserve(Integer userId, Integer slotId, Integer sessionId) {
-        // 检查开闸
-        RBucket<String> gate = redisson.getBucket(RedisKeys.gateKey(sessionId));
-        if (!"1".equals(gate.get())) {
-            throw new BaseException(ResponseCode.UNGATED);
+        // 发送缓冲区已满时直接拒绝，避免扣了库存又要回补
+        if (!reservePublisher.hasCapacity()) {
+            throw new BaseException(ResponseCode.TOO_MANY_REQUESTS);
         }
 
-        // 快路径：Redis 校验 slot 与 session 的归属关系，避免串场抢票
-        // 说明：未预热时 slotSession 可能不存在，此时按“未开闸/未就绪”处理，避免误判 PARAM_ERROR
-        RBucket<Integer> slotSession = redisson.getBucket(RedisKeys.slotSessionKey(slotId));
-        Integer cachedSessionId = slotSession.get();
-        if (cachedSessionId == null) {
-            throw new BaseException(ResponseCode.UNGATED);
+        // 本地近缓存预检：未开闸、slot 不属于该场次或已知售罄时直接拒绝，不访问 Redis，也不消耗限流令牌
+        if (nearCache.isEnabled()) {
+            checkByNearCache(slotId, sessionId);
         }
-        if (!cachedSessionId.equals(sessionId)) {
-            throw new BaseException(ResponseCode.PARAM_ERROR);
+
+        // 启用等候室时只有放行有效期内的用户可以抢占
+        if (!waitingRoomService.isAdmitted(userId, sessionId)) {
+            throw new BaseException(ResponseCode.NOT_ADMITTED);
         }
 
-        // 用户维度限流：每分钟最多 5 次尝试
-        boolean allowed = rateLimitService.tryConsume(userId.toString(), 5, Duration.ofMinutes(1));
+        // 用户、IP、场次全局三个维度限流，本地预筛后再由 Redis 一次往返判定
+        boolean allowed = rateLimitService.tryAcquireReserve(userId, RequestGetter.getClientIp(), sessionId);
         if (!allowed) {
             throw new BaseException(ResponseCode.TOO_MANY_REQUESTS);
         }
 
-        // 检查去重
-        RSet<Integer> dedup = redisson.getSet(RedisKeys.dedupKey(slotId));
-        boolean firstTry = dedup.add(userId);
-        if (!firstTry) {
-            throw new BaseException(ResponseCode.DUP_REQ);
+        // 开闸、slot 归属、场次配额、扣库存、写 pending 在同一脚本内原子完成，避免多次往返和配额回滚竞态
+        String traceId = UUID.randomUUID().toString();
+        long soldOutEpoch = nearCache.soldOutEpoch();
+        Long code = slotStockService.reserve(userId, slotId, sessionId, traceId, PENDING_TTL_SECONDS);
+        if (code != null && code == -5L) {
+            nearCache.markSoldOut(slotId, soldOutEpoch);
         }
+        checkReserveScriptCode(code);
 
-        // 抢库存
-        RSemaphore sem = redisson.getSemaphore(RedisKeys.semKey(slotId));
-        boolean got = sem.tryAcquire();
-        if (!got) {
-            dedup.remove(userId); // 回滚去重
-            throw new BaseException(ResponseCode.OUT_OF_STOCK);
+        // 放入异步发送管道后立即返回，confirm/return 由回调异步补偿
+        ReserveMessage message = new ReserveMessage(userId, slotId, sessionId, traceId);
+        if (!reservePublisher.offer(message)) {
+            if (publishCallbackHandler.clearPending(traceId)) {
+                publishCallbackHandler.releaseReserveResource(userId, slotId, traceId, "publish-buffer-full");
+            }
+            throw new BaseException(ResponseCode.TOO_MANY_REQUESTS);
         }
+        waitingRoomService.release(userId, sessionId);
+        return traceId;
+    }
 
-        String traceId = UUID.randomUUID().toString();
-        redisson.getBucket(RedisKeys.reservePendingKey(traceId))
-                .set(userId + ":" + slotId, Duration.ofSeconds(PENDING_TTL_SECONDS));
+    protected void checkByNearCache(Integer slotId, Integer sessionId) {
+        if (!nearCache.isGateOpen(sessionId)) {
+            throw new BaseException(ResponseCode.UNGATED);
+        }
+        Integer cachedSessionId = nearCache.getSlotSession(slotId);
+        if (cachedSessionId == null) {
+            throw new BaseException(ResponseCode.UNGATED);
+        }
+        if (!cachedSessionId.equals(sessionId)) {
+            throw new BaseException(ResponseCode.PARAM_ERROR);
+        }
+        if (nearCache.isSoldOut(slotId)) {
+            throw new BaseException(ResponseCode.OUT_OF_STOCK);
+        }
+    }
 
-        ReserveMessage message = new ReserveMessage(userId, slotId, sessionId, traceId);
-        CorrelationData correlationData = new CorrelationData(traceId);
-        try {
-            rabbitTemplate.convertAndSend(
-                    MqNames.RESERVE_EXCHANGE,
-                    MqNames.RESERVE_ROUTING_KEY,
-                    message,
-                    rawMessage -> {
-                        rawMessage.getMessageProperties().setMessageId(traceId);
-                        rawMessage.getMessageProperties().setHeader("traceId", traceId);
-                        return rawMessage;
-                    },
-                    correlationData
-            );
-        } catch (Exception e) {
-            // 发送阶段异常可判定为失败，执行补偿
-            publishCallbackHandler.compensateByTraceId(traceId, "sync-send-exception");
+    protected void checkReserveScriptCode(Long code) {
+        if (code == null) {
             throw new BaseException(ResponseCode.FAILED);
         }
-
-        try {
-            CorrelationData.Confirm confirm = correlationData.getFuture()
-                    .get(PUBLISH_CONFIRM_TIMEOUT_MS, TimeUnit.MILLISECONDS);
-            if (confirm == null || !confirm.isAck()) {
-                publishCallbackHandler.compensateByTraceId(traceId,
-                        "sync-confirm-failed:" + (confirm == null ? "null" : confirm.getReason()));
-                throw new BaseException(ResponseCode.FAILED);
+        switch (code.intValue()) {
+            case 1 -> {
             }
-        } catch (TimeoutException e) {
-            // confirm 超时属于状态未知：消息可能已入队/已消费，不能提前补偿
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new BaseException(ResponseCode.FAILED);
-        } catch (Exception e) {
-            throw new BaseException(ResponseCode.FAILED);
+            // 未预热时 slotSession 不存在，按“未开闸/未就绪”处理，避免误判 PARAM_ERROR
+            case -1, -2 -> throw new BaseException(ResponseCode.UNGATED);
+            case -3 -> throw new BaseException(ResponseCode.PARAM_ERROR);
+            case -4 -> throw new BaseException(ResponseCode.SESSION_QUOTA_EXCEEDED);
+            case -5 -> throw new BaseException(ResponseCode.OUT_OF_STOCK);
+            default -> throw new BaseException(ResponseCode.FAILED);
         }
-        return traceId;
     }
 
     @Override
@@ -147,12 +155,31 @@ public class ReserveServiceImpl implements IReserveService {
         if (userId == null || traceId == null || traceId.isBlank()) {
             throw new BaseException(ResponseCode.PARAM_ERROR);
         }
+        // 终态结果与 pending 一次 MGET，排队中与失败的轮询不访问数据库，成功时只按主键读当前状态
+        ReserveResultCache.Entry cached = resultCache.lookup(traceId);
+        if (cached != null) {
+            if (cached.userId() != null && !userId.equals(cached.userId())) {
+                throw new BaseException(ResponseCode.PARAM_ERROR);
+            }
+            if (cached.status() != ReserveResultStatus.SUCCESS) {
+                return new ReserveResultVO(traceId, cached.status(), null, null);
+            }
+            // 预约状态随取消、支付、超时变化，按主键实时读取
+            Reservation current = reservationMapper.selectOne(new LambdaQueryWrapper<Reservation>()
+                    .select(Reservation::getStatus)
+                    .eq(Reservation::getId, cached.reservationId()));
+            if (current != null) {
+                return new ReserveResultVO(traceId, ReserveResultStatus.SUCCESS, cached.reservationId(),
+                        current.getStatus());
+            }
+        }
         Reservation reservation = reservationMapper.selectOne(new LambdaQueryWrapper<Reservation>()
                 .eq(Reservation::getTraceId, traceId));
         if (reservation != null) {
             if (!userId.equals(reservation.getUserId())) {
                 throw new BaseException(ResponseCode.PARAM_ERROR);
             }
+            resultCache.putSuccess(reservation);
             return new ReserveResultVO(
                     traceId,
                     ReserveResultStatus.SUCCESS,
@@ -160,22 +187,7 @@ public class ReserveServiceImpl implements IReserveService {
                     reservation.getStatus()
             );
         }
-        Object pendingObj = redisson.getBucket(RedisKeys.reservePendingKey(traceId)).get();
-        String pending = pendingObj == null ? null : String.valueOf(pendingObj);
-        if (pending != null && !pending.isBlank()) {
-            String[] parts = pending.split(":", 2);
-            if (parts.length == 2) {
-                try {
-                    Integer pendingUserId = Integer.parseInt(parts[0]);
-                    if (!userId.equals(pendingUserId)) {
-                        throw new BaseException(ResponseCode.PARAM_ERROR);
-                    }
-                } catch (NumberFormatException e) {
-                    throw new BaseException(ResponseCode.PARAM_ERROR);
-                }
-            }
-            return new ReserveResultVO(traceId, ReserveResultStatus.PENDING, null, null);
-        }
+        resultCache.putFailed(traceId, userId);
         return new ReserveResultVO(traceId, ReserveResultStatus.FAILED, null, null);
     }
 
@@ -212,19 +224,40 @@ public class ReserveServiceImpl implements IReserveService {
         if (reservationId == null) {
             return;
         }
-        Reservation reservation = reservationMapper.selectById(reservationId);
-        if (reservation == null || reservation.getStatus() != ReservationStatus.PENDING_PAYMENT) {
-            return;
+        cancelTimeoutPending(List.of(reservationId));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int cancelTimeoutPending(Collection<Integer> reservationIds) {
+        if (reservationIds == null || reservationIds.isEmpty()) {
+            return 0;
         }
-        int updated = reservationMapper.update(null, new LambdaUpdateWrapper<Reservation>()
+        // 行锁防止与支付成功并发：只取消锁定时仍为待支付的行
+        List<Reservation> pending = reservationMapper.selectList(new LambdaQueryWrapper<Reservation>()
+                .in(Reservation::getId, reservationIds)
+                .eq(Reservation::getStatus, ReservationStatus.PENDING_PAYMENT)
+                .last("for update"));
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        List<Integer> ids = pending.stream().map(Reservation::getId).toList();
+        reservationMapper.update(null, new LambdaUpdateWrapper<Reservation>()
                 .set(Reservation::getStatus, ReservationStatus.CANCELLED)
-                .eq(Reservation::getId, reservationId)
+                .in(Reservation::getId, ids)
                 .eq(Reservation::getStatus, ReservationStatus.PENDING_PAYMENT));
-        if (updated <= 0) {
-            return;
-        }
-        closePayingOrders(reservationId);
-        releaseReserveResource(reservation.getUserId(), reservation.getSlotId());
+        payOrderMapper.update(null, new LambdaUpdateWrapper<PayOrder>()
+                .set(PayOrder::getStatus, PayOrderStatus.CLOSED)
+                .in(PayOrder::getReservationId, ids)
+                .eq(PayOrder::getStatus, PayOrderStatus.PAYING));
+        // 提交后再回补，避免事务回滚时库存被多还
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                releaseReserveResources(pending);
+            }
+        });
+        return pending.size();
     }
 
     private void closePayingOrders(Integer reservationId) {
@@ -237,15 +270,30 @@ public class ReserveServiceImpl implements IReserveService {
                 .eq(PayOrder::getStatus, PayOrderStatus.PAYING));
     }
 
+    private void releaseReserveResources(List<Reservation> reservations) {
+        Set<Integer> slotIds = reservations.stream().map(Reservation::getSlotId).collect(Collectors.toSet());
+        Map<Integer, Integer> sessionBySlot = timeSlotMapper.selectList(new LambdaQueryWrapper<TimeSlot>()
+                        .select(TimeSlot::getId, TimeSlot::getSessionId)
+                        .in(TimeSlot::getId, slotIds))
+                .stream()
+                .collect(Collectors.toMap(TimeSlot::getId, TimeSlot::getSessionId));
+        List<ISlotStockService.SlotHold> holds = new ArrayList<>(reservations.size());
+        for (Reservation reservation : reservations) {
+            Integer sessionId = sessionBySlot.get(reservation.getSlotId());
+            if (sessionId == null) {
+                continue;
+            }
+            holds.add(new ISlotStockService.SlotHold(reservation.getUserId(), reservation.getSlotId(), sessionId));
+        }
+        nearCache.publishSlotsAvailable(slotStockService.releaseBatch(holds));
+    }
+
     private void releaseReserveResource(Integer userId, Integer slotId) {
         if (userId == null || slotId == null) {
             return;
         }
-        RSet<Integer> dedup = redisson.getSet(RedisKeys.dedupKey(slotId));
-        dedup.remove(userId);
-        RSemaphore sem = redisson.getSemaphore(RedisKeys.semKey(slotId));
-        if (sem.isExists()) {
-            sem.release();
+        if (slotStockService.release(userId, slotId)) {
+            nearCache.publishSlotAvailable(slotId);
         }
     }
 }
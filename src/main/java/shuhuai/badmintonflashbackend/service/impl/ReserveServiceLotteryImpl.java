@@ -0,0 +1,58 @@
+package shuhuai.badmintonflashbackend.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.cache.ReserveResultCache;
+import shuhuai.badmintonflashbackend.excep.BaseException;
+import shuhuai.badmintonflashbackend.mapper.IPayOrderMapper;
+import shuhuai.badmintonflashbackend.mapper.IReservationMapper;
+import shuhuai.badmintonflashbackend.mapper.ITimeSlotMapper;
+import shuhuai.badmintonflashbackend.mq.ReservePublishCallbackHandler;
+import shuhuai.badmintonflashbackend.mq.ReservePublisher;
+import shuhuai.badmintonflashbackend.response.ResponseCode;
+import shuhuai.badmintonflashbackend.service.ILotteryService;
+import shuhuai.badmintonflashbackend.service.IRateLimitService;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
+import shuhuai.badmintonflashbackend.service.IWaitingRoomService;
+import shuhuai.badmintonflashbackend.utils.RequestGetter;
+
+/**
+ * 抽签模式（reserve.mode=lottery）
+ * 抢占接口只登记意向并返回 traceId，窗口结束后由 {@link LotteryServiceImpl} 统一分配；
+ * 结果查询、取消与超时取消沿用 {@link ReserveServiceImpl}。
+ */
+@Service
+@ConditionalOnProperty(name = "reserve.mode", havingValue = "lottery")
+public class ReserveServiceLotteryImpl extends ReserveServiceImpl {
+    private final ILotteryService lotteryService;
+
+    @Autowired
+    public ReserveServiceLotteryImpl(IRateLimitService rateLimitService, ReservePublisher reservePublisher,
+                                     ReservePublishCallbackHandler publishCallbackHandler,
+                                     IReservationMapper reservationMapper, IPayOrderMapper payOrderMapper,
+                                     ITimeSlotMapper timeSlotMapper, ISlotStockService slotStockService,
+                                     ReserveNearCache nearCache, ReserveResultCache resultCache,
+                                     IWaitingRoomService waitingRoomService, ILotteryService lotteryService) {
+        super(rateLimitService, reservePublisher, publishCallbackHandler, reservationMapper, payOrderMapper,
+                timeSlotMapper, slotStockService, nearCache, resultCache, waitingRoomService);
+        this.lotteryService = lotteryService;
+    }
+
+    @Override
+    public String reserve(Integer userId, Integer slotId, Integer sessionId) {
+        // 登记前只校验 slot 归属，闸门与登记窗口由脚本以 Redis 为准判断
+        Integer slotSessionId = nearCache.getSlotSession(slotId);
+        if (slotSessionId == null) {
+            throw new BaseException(ResponseCode.UNGATED);
+        }
+        if (!slotSessionId.equals(sessionId)) {
+            throw new BaseException(ResponseCode.PARAM_ERROR);
+        }
+        if (!rateLimitService.tryAcquireReserve(userId, RequestGetter.getClientIp(), sessionId)) {
+            throw new BaseException(ResponseCode.TOO_MANY_REQUESTS);
+        }
+        return lotteryService.submit(userId, slotId, sessionId);
+    }
+}
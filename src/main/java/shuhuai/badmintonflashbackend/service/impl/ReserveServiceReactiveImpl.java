@@ -0,0 +1,95 @@
+package shuhuai.badmintonflashbackend.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.cache.ReserveResultCache;
+import shuhuai.badmintonflashbackend.excep.BaseException;
+import shuhuai.badmintonflashbackend.mapper.IPayOrderMapper;
+import shuhuai.badmintonflashbackend.mapper.IReservationMapper;
+import shuhuai.badmintonflashbackend.mapper.ITimeSlotMapper;
+import shuhuai.badmintonflashbackend.mq.ReservePublishCallbackHandler;
+import shuhuai.badmintonflashbackend.mq.ReservePublisher;
+import shuhuai.badmintonflashbackend.mq.message.ReserveMessage;
+import shuhuai.badmintonflashbackend.response.ResponseCode;
+import shuhuai.badmintonflashbackend.service.IRateLimitService;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
+import shuhuai.badmintonflashbackend.service.IWaitingRoomService;
+import shuhuai.badmintonflashbackend.utils.RequestGetter;
+
+import java.util.UUID;
+
+/**
+ * 响应式抢占实现（reserve.mode=reactive）
+ * 限流与原子抢占脚本走 Redisson 异步/响应式客户端，请求线程不等待 Redis 往返；
+ * 结果查询、取消与超时取消沿用 {@link ReserveServiceImpl}。
+ */
+@Service
+@ConditionalOnProperty(name = "reserve.mode", havingValue = "reactive")
+public class ReserveServiceReactiveImpl extends ReserveServiceImpl {
+    @Autowired
+    public ReserveServiceReactiveImpl(IRateLimitService rateLimitService, ReservePublisher reservePublisher,
+                                      ReservePublishCallbackHandler publishCallbackHandler,
+                                      IReservationMapper reservationMapper, IPayOrderMapper payOrderMapper,
+                                      ITimeSlotMapper timeSlotMapper, ISlotStockService slotStockService,
+                                      ReserveNearCache nearCache, ReserveResultCache resultCache,
+                                      IWaitingRoomService waitingRoomService) {
+        super(rateLimitService, reservePublisher, publishCallbackHandler, reservationMapper, payOrderMapper,
+                timeSlotMapper, slotStockService, nearCache, resultCache, waitingRoomService);
+    }
+
+    @Override
+    public String reserve(Integer userId, Integer slotId, Integer sessionId) {
+        return reserveReactive(userId, slotId, sessionId).block();
+    }
+
+    @Override
+    public Mono<String> reserveReactive(Integer userId, Integer slotId, Integer sessionId) {
+        // 缓冲区与近缓存预检都是本地判断，在请求线程同步完成
+        if (!reservePublisher.hasCapacity()) {
+            return Mono.error(new BaseException(ResponseCode.TOO_MANY_REQUESTS));
+        }
+        if (nearCache.isEnabled()) {
+            try {
+                checkByNearCache(slotId, sessionId);
+            } catch (BaseException e) {
+                return Mono.error(e);
+            }
+        }
+
+        // 客户端 IP 绑定在请求上，需在组装 Mono 之前取出
+        String clientIp = RequestGetter.getClientIp();
+        String traceId = UUID.randomUUID().toString();
+        long soldOutEpoch = nearCache.soldOutEpoch();
+        return waitingRoomService.isAdmittedReactive(userId, sessionId)
+                .flatMap(admitted -> admitted
+                        ? rateLimitService.tryAcquireReserveAsync(userId, clientIp, sessionId)
+                        : Mono.error(new BaseException(ResponseCode.NOT_ADMITTED)))
+                .flatMap(allowed -> allowed
+                        ? slotStockService.reserveReactive(userId, slotId, sessionId, traceId, PENDING_TTL_SECONDS)
+                        : Mono.error(new BaseException(ResponseCode.TOO_MANY_REQUESTS)))
+                .flatMap(code -> {
+                    if (code == -5L) {
+                        nearCache.markSoldOut(slotId, soldOutEpoch);
+                    }
+                    checkReserveScriptCode(code);
+                    if (reservePublisher.offer(new ReserveMessage(userId, slotId, sessionId, traceId))) {
+                        waitingRoomService.release(userId, sessionId);
+                        return Mono.just(traceId);
+                    }
+                    // 补偿是同步 Redis 调用，切到弹性线程执行，不占用 Redisson 的 I/O 线程
+                    return Mono.<String>fromRunnable(() -> {
+                                if (publishCallbackHandler.clearPending(traceId)) {
+                                    publishCallbackHandler.releaseReserveResource(userId, slotId, traceId,
+                                            "publish-buffer-full");
+                                }
+                            })
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(Mono.error(new BaseException(ResponseCode.TOO_MANY_REQUESTS)));
+                })
+                .switchIfEmpty(Mono.error(new BaseException(ResponseCode.FAILED)));
+    }
+}
@@ -0,0 +1,173 @@
+package shuhuai.badmintonflashbackend.service.impl;
+
+import org.redisson.api.RMap;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import shuhuai.badmintonflashbackend.config.ReserveQuotaConfig;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.entity.FlashSession;
+import shuhuai.badmintonflashbackend.entity.TimeSlot;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
+import shuhuai.badmintonflashbackend.utils.DateTimes;
+import shuhuai.badmintonflashbackend.utils.RedisScripts;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 按场次聚合的 key：每场次一个库存 hash（bf:session:stock）和一个用户配额 hash（bf:dedup:session），
+ * slot→session 映射集中在一个 hash（bf:slot:sessions），整场次操作都是单条命令或单个脚本
+ */
+@Service
+@ConditionalOnProperty(name = "reserve.keyLayout", havingValue = "session")
+public class SessionHashStockServiceImpl implements ISlotStockService {
+    private static final String RESERVE_SCRIPT = "reserve_session.lua";
+    private static final String RELEASE_SCRIPT = "release_session.lua";
+    private static final String RELEASE_BATCH_SCRIPT = "release_batch_session.lua";
+    private static final String WARMUP_SCRIPT = "warmup_session.lua";
+    private static final String CLEANUP_SCRIPT = "cleanup_session.lua";
+    private static final int SLOT_PERMITS = 1;
+
+    private final RedissonClient redisson;
+    private final RedisScripts redisScripts;
+    private final ReserveQuotaConfig quotaConfig;
+
+    public SessionHashStockServiceImpl(RedissonClient redisson, RedisScripts redisScripts,
+                                       ReserveQuotaConfig quotaConfig) {
+        this.redisson = redisson;
+        this.redisScripts = redisScripts;
+        this.quotaConfig = quotaConfig;
+    }
+
+    @Override
+    public Long reserve(Integer userId, Integer slotId, Integer sessionId, String traceId, long pendingTtlSeconds) {
+        return redisScripts.evalSha(RESERVE_SCRIPT, RScript.ReturnType.INTEGER,
+                reserveKeys(sessionId, traceId),
+                reserveArgs(userId, slotId, sessionId, pendingTtlSeconds));
+    }
+
+    @Override
+    public Mono<Long> reserveReactive(Integer userId, Integer slotId, Integer sessionId, String traceId,
+                                      long pendingTtlSeconds) {
+        return redisScripts.evalShaReactive(RESERVE_SCRIPT, RScript.ReturnType.INTEGER,
+                reserveKeys(sessionId, traceId),
+                reserveArgs(userId, slotId, sessionId, pendingTtlSeconds));
+    }
+
+    private static List<Object> reserveKeys(Integer sessionId, String traceId) {
+        return List.of(RedisKeys.gateKey(sessionId), RedisKeys.slotSessionHashKey(),
+                RedisKeys.sessionStockKey(sessionId), RedisKeys.userDedupKey(sessionId),
+                RedisKeys.reservePendingKey(traceId));
+    }
+
+    private Object[] reserveArgs(Integer userId, Integer slotId, Integer sessionId, long pendingTtlSeconds) {
+        return new Object[]{userId.toString(), sessionId.toString(), slotId.toString(), userId + ":" + slotId,
+                String.valueOf(pendingTtlSeconds), String.valueOf(quotaConfig.getPerSession()),
+                String.valueOf(DateTimes.ttlToEndOfTodaySeconds())};
+    }
+
+    @Override
+    public boolean release(Integer userId, Integer slotId) {
+        Integer sessionId = getSlotSession(slotId);
+        if (sessionId == null) {
+            return false;
+        }
+        Long released = redisScripts.evalSha(RELEASE_SCRIPT, RScript.ReturnType.INTEGER,
+                List.of(RedisKeys.sessionStockKey(sessionId), RedisKeys.userDedupKey(sessionId)),
+                slotId.toString(), userId.toString());
+        return released != null && released == 1L;
+    }
+
+    @Override
+    public List<Integer> releaseBatch(List<SlotHold> holds) {
+        if (holds == null || holds.isEmpty()) {
+            return List.of();
+        }
+        List<Object> keys = new ArrayList<>(holds.size() * 2);
+        List<Object> args = new ArrayList<>(holds.size() * 2);
+        for (SlotHold hold : holds) {
+            keys.add(RedisKeys.sessionStockKey(hold.sessionId()));
+            keys.add(RedisKeys.userDedupKey(hold.sessionId()));
+            args.add(hold.slotId().toString());
+            args.add(hold.userId().toString());
+        }
+        List<Long> released = redisScripts.evalSha(RELEASE_BATCH_SCRIPT, RScript.ReturnType.MULTI, keys,
+                args.toArray());
+        return SlotKeyStockServiceImpl.releasedSlotIds(holds, released);
+    }
+
+    @Override
+    public WarmupResult warmup(FlashSession session, LocalDate day, List<TimeSlot> timeSlots, boolean checkOnly) {
+        long ttlSec = DateTimes.ttlToEndOfTodaySeconds();
+        long startEpoch = ZonedDateTime.of(day, session.getFlashTime(), DateTimes.zone()).toEpochSecond();
+        List<Object> keys = List.of(
+                RedisKeys.gateKey(session.getId()),
+                RedisKeys.gateTimeKey(session.getId()),
+                RedisKeys.warmupSessionDoneKey(day, session.getId()),
+                RedisKeys.slotSessionHashKey(),
+                RedisKeys.sessionStockKey(session.getId()));
+        List<Object> args = new ArrayList<>(5 + timeSlots.size());
+        args.add(session.getId().toString());
+        args.add(String.valueOf(ttlSec));
+        args.add(String.valueOf(startEpoch));
+        args.add(String.valueOf(SLOT_PERMITS));
+        args.add(checkOnly ? "1" : "0");
+        for (TimeSlot timeSlot : timeSlots) {
+            args.add(timeSlot.getId().toString());
+        }
+        List<Long> reply = redisScripts.evalSha(WARMUP_SCRIPT, RScript.ReturnType.MULTI, keys, args.toArray());
+        return SlotKeyStockServiceImpl.toWarmupResult(reply);
+    }
+
+    @Override
+    public void cleanup(List<TimeSlot> slots) {
+        Map<Integer, List<Object>> slotIdsBySession = new LinkedHashMap<>();
+        for (TimeSlot slot : slots) {
+            if (slot == null || slot.getId() == null || slot.getSessionId() == null) {
+                continue;
+            }
+            slotIdsBySession.computeIfAbsent(slot.getSessionId(), k -> new ArrayList<>()).add(slot.getId().toString());
+        }
+        for (Map.Entry<Integer, List<Object>> entry : slotIdsBySession.entrySet()) {
+            Integer sessionId = entry.getKey();
+            redisScripts.evalSha(CLEANUP_SCRIPT, RScript.ReturnType.INTEGER,
+                    List.of(RedisKeys.slotSessionHashKey(), RedisKeys.sessionStockKey(sessionId)),
+                    entry.getValue().toArray());
+            // slot 整体重建时场次配额一并重置
+            redisson.getKeys().delete(RedisKeys.userDedupKey(sessionId));
+        }
+    }
+
+    @Override
+    public Integer getSlotSession(Integer slotId) {
+        RMap<String, String> slotSessions = redisson.getMap(RedisKeys.slotSessionHashKey(), StringCodec.INSTANCE);
+        return SlotKeyStockServiceImpl.parseInteger(slotSessions.get(slotId.toString()));
+    }
+
+    @Override
+    public Map<Integer, Integer> getRemaining(Integer sessionId, List<Integer> slotIds) {
+        if (slotIds == null || slotIds.isEmpty()) {
+            return Map.of();
+        }
+        RMap<String, String> stock = redisson.getMap(RedisKeys.sessionStockKey(sessionId), StringCodec.INSTANCE);
+        Map<String, String> values = stock.getAll(slotIds.stream().map(String::valueOf).collect(Collectors.toSet()));
+        Map<Integer, Integer> remaining = new HashMap<>();
+        for (Integer slotId : slotIds) {
+            Integer permits = SlotKeyStockServiceImpl.parseInteger(values.get(slotId.toString()));
+            if (permits != null) {
+                remaining.put(slotId, permits);
+            }
+        }
+        return remaining;
+    }
+}
@@ -0,0 +1,200 @@
+package shuhuai.badmintonflashbackend.service.impl;
+
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import shuhuai.badmintonflashbackend.config.ReserveQuotaConfig;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.entity.FlashSession;
+import shuhuai.badmintonflashbackend.entity.TimeSlot;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
+import shuhuai.badmintonflashbackend.utils.DateTimes;
+import shuhuai.badmintonflashbackend.utils.RedisScripts;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 每 slot 独立 key：bf:sem / bf:slot:session / bf:warmup:done，用户配额按场次一个 hash（bf:dedup:session）
+ */
+@Service
+@ConditionalOnProperty(name = "reserve.keyLayout", havingValue = "slot", matchIfMissing = true)
+public class SlotKeyStockServiceImpl implements ISlotStockService {
+    private static final String RESERVE_SCRIPT = "reserve.lua";
+    private static final String RELEASE_SCRIPT = "release.lua";
+    private static final String RELEASE_BATCH_SCRIPT = "release_batch.lua";
+    private static final String WARMUP_SCRIPT = "warmup.lua";
+    private static final int SLOT_PERMITS = 1;
+
+    private final RedissonClient redisson;
+    private final RedisScripts redisScripts;
+    private final ReserveQuotaConfig quotaConfig;
+
+    public SlotKeyStockServiceImpl(RedissonClient redisson, RedisScripts redisScripts, ReserveQuotaConfig quotaConfig) {
+        this.redisson = redisson;
+        this.redisScripts = redisScripts;
+        this.quotaConfig = quotaConfig;
+    }
+
+    @Override
+    public Long reserve(Integer userId, Integer slotId, Integer sessionId, String traceId, long pendingTtlSeconds) {
+        return redisScripts.evalSha(RESERVE_SCRIPT, RScript.ReturnType.INTEGER,
+                reserveKeys(slotId, sessionId, traceId),
+                reserveArgs(userId, slotId, sessionId, pendingTtlSeconds));
+    }
+
+    @Override
+    public Mono<Long> reserveReactive(Integer userId, Integer slotId, Integer sessionId, String traceId,
+                                      long pendingTtlSeconds) {
+        return redisScripts.evalShaReactive(RESERVE_SCRIPT, RScript.ReturnType.INTEGER,
+                reserveKeys(slotId, sessionId, traceId),
+                reserveArgs(userId, slotId, sessionId, pendingTtlSeconds));
+    }
+
+    private static List<Object> reserveKeys(Integer slotId, Integer sessionId, String traceId) {
+        return List.of(RedisKeys.gateKey(sessionId), RedisKeys.slotSessionKey(slotId), RedisKeys.userDedupKey(sessionId),
+                RedisKeys.semKey(slotId), RedisKeys.reservePendingKey(traceId));
+    }
+
+    private Object[] reserveArgs(Integer userId, Integer slotId, Integer sessionId, long pendingTtlSeconds) {
+        return new Object[]{userId.toString(), sessionId.toString(), userId + ":" + slotId,
+                String.valueOf(pendingTtlSeconds), String.valueOf(quotaConfig.getPerSession()),
+                String.valueOf(DateTimes.ttlToEndOfTodaySeconds())};
+    }
+
+    @Override
+    public boolean release(Integer userId, Integer slotId) {
+        Integer sessionId = getSlotSession(slotId);
+        if (sessionId == null) {
+            return false;
+        }
+        Long released = redisScripts.evalSha(RELEASE_SCRIPT, RScript.ReturnType.INTEGER,
+                List.of(RedisKeys.userDedupKey(sessionId), RedisKeys.semKey(slotId)),
+                userId.toString());
+        return released != null && released == 1L;
+    }
+
+    @Override
+    public List<Integer> releaseBatch(List<SlotHold> holds) {
+        if (holds == null || holds.isEmpty()) {
+            return List.of();
+        }
+        List<Object> keys = new ArrayList<>(holds.size() * 2);
+        List<Object> args = new ArrayList<>(holds.size());
+        for (SlotHold hold : holds) {
+            keys.add(RedisKeys.userDedupKey(hold.sessionId()));
+            keys.add(RedisKeys.semKey(hold.slotId()));
+            args.add(hold.userId().toString());
+        }
+        List<Long> released = redisScripts.evalSha(RELEASE_BATCH_SCRIPT, RScript.ReturnType.MULTI, keys,
+                args.toArray());
+        return releasedSlotIds(holds, released);
+    }
+
+    @Override
+    public WarmupResult warmup(FlashSession session, LocalDate day, List<TimeSlot> timeSlots, boolean checkOnly) {
+        long ttlSec = DateTimes.ttlToEndOfTodaySeconds();
+        long startEpoch = ZonedDateTime.of(day, session.getFlashTime(), DateTimes.zone()).toEpochSecond();
+        List<Object> keys = new ArrayList<>(3 + timeSlots.size() * 3);
+        keys.add(RedisKeys.gateKey(session.getId()));
+        keys.add(RedisKeys.gateTimeKey(session.getId()));
+        keys.add(RedisKeys.warmupSessionDoneKey(day, session.getId()));
+        for (TimeSlot timeSlot : timeSlots) {
+            Integer slotId = timeSlot.getId();
+            keys.add(RedisKeys.slotSessionKey(slotId));
+            keys.add(RedisKeys.semKey(slotId));
+            keys.add(RedisKeys.warmupDoneKey(slotId));
+        }
+        List<Long> reply = redisScripts.evalSha(WARMUP_SCRIPT, RScript.ReturnType.MULTI, keys,
+                session.getId().toString(), String.valueOf(ttlSec), String.valueOf(startEpoch),
+                String.valueOf(SLOT_PERMITS), checkOnly ? "1" : "0");
+        return toWarmupResult(reply);
+    }
+
+    @Override
+    public void cleanup(List<TimeSlot> slots) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (TimeSlot slot : slots) {
+            if (slot == null || slot.getId() == null) {
+                continue;
+            }
+            Integer slotId = slot.getId();
+            keys.add(RedisKeys.slotSessionKey(slotId));
+            keys.add(RedisKeys.semKey(slotId));
+            keys.add(RedisKeys.warmupDoneKey(slotId));
+            if (slot.getSessionId() != null) {
+                // slot 整体重建时场次配额一并重置
+                keys.add(RedisKeys.userDedupKey(slot.getSessionId()));
+            }
+        }
+        if (!keys.isEmpty()) {
+            redisson.getKeys().delete(keys.toArray(String[]::new));
+        }
+    }
+
+    @Override
+    public Integer getSlotSession(Integer slotId) {
+        String cached = redisson.<String>getBucket(RedisKeys.slotSessionKey(slotId), StringCodec.INSTANCE).get();
+        return parseInteger(cached);
+    }
+
+    @Override
+    public Map<Integer, Integer> getRemaining(Integer sessionId, List<Integer> slotIds) {
+        if (slotIds == null || slotIds.isEmpty()) {
+            return Map.of();
+        }
+        String[] keys = slotIds.stream().map(RedisKeys::semKey).toArray(String[]::new);
+        Map<String, String> values = redisson.getBuckets(StringCodec.INSTANCE).get(keys);
+        Map<Integer, Integer> remaining = new HashMap<>();
+        for (Integer slotId : slotIds) {
+            Integer permits = parseInteger(values.get(RedisKeys.semKey(slotId)));
+            if (permits != null) {
+                remaining.put(slotId, permits);
+            }
+        }
+        return remaining;
+    }
+
+    static Integer parseInteger(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 批量回补脚本返回的是条目序号（从 1 开始）
+     */
+    static List<Integer> releasedSlotIds(List<SlotHold> holds, List<Long> released) {
+        List<Integer> slotIds = new ArrayList<>(released.size());
+        for (Long index : released) {
+            slotIds.add(holds.get(index.intValue() - 1).slotId());
+        }
+        return slotIds;
+    }
+
+    /**
+     * 脚本返回 {gate 是否新建, 是否完成, 归属其他场次的 slot 序号（从 1 开始）...}
+     */
+    static WarmupResult toWarmupResult(List<Long> reply) {
+        Set<Integer> foreignSlotIndexes = new HashSet<>();
+        for (int i = 2; i < reply.size(); i++) {
+            foreignSlotIndexes.add(reply.get(i).intValue() - 1);
+        }
+        return new WarmupResult(reply.get(0) == 1L, reply.get(1) == 1L, foreignSlotIndexes);
+    }
+}
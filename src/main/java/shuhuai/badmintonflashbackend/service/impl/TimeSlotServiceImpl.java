@@ -2,12 +2,11 @@ package shuhuai.badmintonflashbackend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.config.SlotGenConfig;
 import shuhuai.badmintonflashbackend.entity.Court;
 import shuhuai.badmintonflashbackend.entity.FlashSession;
 import shuhuai.badmintonflashbackend.entity.TimeSlot;
@@ -16,6 +15,7 @@ import shuhuai.badmintonflashbackend.mapper.ICourtMapper;
 import shuhuai.badmintonflashbackend.mapper.ITimeSlotMapper;
 import shuhuai.badmintonflashbackend.mapper.IFlashSessionMapper;
 import shuhuai.badmintonflashbackend.response.ResponseCode;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
 import shuhuai.badmintonflashbackend.service.ITimeSlotService;
 import shuhuai.badmintonflashbackend.utils.DateTimes;
 
@@ -23,48 +23,72 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Service
 public class TimeSlotServiceImpl extends ServiceImpl<ITimeSlotMapper, TimeSlot> implements ITimeSlotService {
     private final IFlashSessionMapper flashSessionMapper;
     private final ICourtMapper courtMapper;
     private final ITimeSlotMapper timeSlotMapper;
-    private final RedissonClient redisson;
+    private final ReserveNearCache nearCache;
+    private final ISlotStockService slotStockService;
+    private final SlotGenConfig slotGenConfig;
 
     @Autowired
     public TimeSlotServiceImpl(IFlashSessionMapper flashSessionMapper, ICourtMapper courtMapper,
-                               ITimeSlotMapper timeSlotMapper, RedissonClient redisson) {
+                               ITimeSlotMapper timeSlotMapper, ReserveNearCache nearCache,
+                               ISlotStockService slotStockService, SlotGenConfig slotGenConfig) {
         this.flashSessionMapper = flashSessionMapper;
         this.courtMapper = courtMapper;
         this.timeSlotMapper = timeSlotMapper;
-        this.redisson = redisson;
+        this.nearCache = nearCache;
+        this.slotStockService = slotStockService;
+        this.slotGenConfig = slotGenConfig;
     }
 
     @Override
     @Transactional
-    public void generateForDate(LocalDate date) {
-        List<FlashSession> flashSessions = flashSessionMapper.selectList(null);
-        for (FlashSession flashSession : flashSessions) {
-            generateForDate(date, flashSession.getId());
-        }
+    public List<TimeSlot> generateForDate(LocalDate date) {
+        return generateForDates(List.of(date));
     }
 
     @Override
     @Transactional
-    public void generateForDate(LocalDate date, Integer sessionId) {
+    public List<TimeSlot> generateForDates(Collection<LocalDate> dates) {
         List<Court> courts = courtMapper.selectList(null);
-        // 批量插入
         List<TimeSlot> timeSlots = new ArrayList<>();
+        for (FlashSession flashSession : flashSessionMapper.selectList(null)) {
+            for (LocalDate date : dates) {
+                timeSlots.addAll(buildSlots(date, flashSession, courts));
+            }
+        }
+        insertSlots(timeSlots);
+        return timeSlots;
+    }
+
+    @Override
+    @Transactional
+    public List<TimeSlot> generateForDate(LocalDate date, Integer sessionId) {
         FlashSession flashSession = flashSessionMapper.selectById(sessionId);
         if (flashSession == null) {
-            return;
+            return List.of();
         }
+        List<TimeSlot> timeSlots = buildSlots(date, flashSession, courtMapper.selectList(null));
+        insertSlots(timeSlots);
+        return timeSlots;
+    }
+
+    private List<TimeSlot> buildSlots(LocalDate date, FlashSession flashSession, List<Court> courts) {
         // 校验整除
         long spanMin = Duration.between(flashSession.getBeginTime(), flashSession.getEndTime()).toMinutes();
         if (spanMin % flashSession.getSlotInterval() != 0) {
             throw new BaseException(ResponseCode.TIME_UNDEVIDED);
         }
+        List<TimeSlot> timeSlots = new ArrayList<>();
         for (Court court : courts) {
             for (LocalTime t = flashSession.getBeginTime();
                  t.isBefore(flashSession.getEndTime());
@@ -78,10 +102,28 @@ public class TimeSlotServiceImpl extends ServiceImpl<ITimeSlotMapper, TimeSlot>
                 timeSlots.add(timeSlot);
             }
         }
-        try {
-            saveBatch(timeSlots);
-        } catch (DuplicateKeyException e) {
-            // 幂等：该日期+场次已生成过，视为成功
+        return timeSlots;
+    }
+
+    /**
+     * 按块多行 insert ignore，每块一次往返；全部插入时直接使用回填 id，
+     * 有已存在的行（重复执行、逻辑删除后重建）时恢复已删除行并按唯一键回查 id
+     */
+    private void insertSlots(List<TimeSlot> timeSlots) {
+        int chunkSize = Math.max(slotGenConfig.getChunkSize(), 1);
+        for (int from = 0; from < timeSlots.size(); from += chunkSize) {
+            List<TimeSlot> chunk = timeSlots.subList(from, Math.min(from + chunkSize, timeSlots.size()));
+            if (timeSlotMapper.insertIgnoreBatch(chunk) == chunk.size()) {
+                continue;
+            }
+            timeSlotMapper.restoreBatch(chunk);
+            Map<SlotKey, Integer> ids = new HashMap<>();
+            for (TimeSlot existed : timeSlotMapper.selectByUniqueKeys(chunk)) {
+                ids.put(SlotKey.of(existed), existed.getId());
+            }
+            for (TimeSlot timeSlot : chunk) {
+                timeSlot.setId(ids.get(SlotKey.of(timeSlot)));
+            }
         }
     }
 
@@ -124,15 +166,18 @@ public class TimeSlotServiceImpl extends ServiceImpl<ITimeSlotMapper, TimeSlot>
         if (slots == null || slots.isEmpty()) {
             return;
         }
-        for (TimeSlot slot : slots) {
-            Integer slotId = slot.getId();
-            if (slotId == null) {
-                continue;
-            }
-            redisson.getBucket(RedisKeys.slotSessionKey(slotId)).delete();
-            redisson.getSemaphore(RedisKeys.semKey(slotId)).delete();
-            redisson.getSet(RedisKeys.dedupKey(slotId)).delete();
-            redisson.getBucket(RedisKeys.warmupDoneKey(slotId)).delete();
+        slotStockService.cleanup(slots);
+        nearCache.publishSlotsChanged(slots.stream()
+                .map(TimeSlot::getId)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    private record SlotKey(LocalDate slotDate, LocalTime startTime, LocalTime endTime, Integer courtId,
+                           Integer sessionId) {
+        static SlotKey of(TimeSlot timeSlot) {
+            return new SlotKey(timeSlot.getSlotDate(), timeSlot.getStartTime(), timeSlot.getEndTime(),
+                    timeSlot.getCourtId(), timeSlot.getSessionId());
         }
     }
 }
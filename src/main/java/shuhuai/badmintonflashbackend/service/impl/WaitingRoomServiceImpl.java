@@ -0,0 +1,196 @@
+package shuhuai.badmintonflashbackend.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import shuhuai.badmintonflashbackend.cache.ReserveNearCache;
+import shuhuai.badmintonflashbackend.config.ReserveWaitingRoomConfig;
+import shuhuai.badmintonflashbackend.constant.RedisKeys;
+import shuhuai.badmintonflashbackend.entity.TimeSlot;
+import shuhuai.badmintonflashbackend.enm.WaitingRoomStatus;
+import shuhuai.badmintonflashbackend.mapper.ITimeSlotMapper;
+import shuhuai.badmintonflashbackend.model.vo.WaitingRoomVO;
+import shuhuai.badmintonflashbackend.service.ISlotStockService;
+import shuhuai.badmintonflashbackend.service.IWaitingRoomService;
+import shuhuai.badmintonflashbackend.utils.DateTimes;
+import shuhuai.badmintonflashbackend.utils.RedisScripts;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Slf4j
+@Service
+public class WaitingRoomServiceImpl implements IWaitingRoomService {
+    private static final String ENTER_SCRIPT = "wait_enter.lua";
+    private static final String ADMIT_SCRIPT = "wait_admit.lua";
+    private static final String ORDER_FIFO = "fifo";
+    private static final long SLOT_IDS_REFRESH_MS = 60_000L;
+
+    private final RedissonClient redisson;
+    private final RedisScripts redisScripts;
+    private final ReserveWaitingRoomConfig waitingRoomConfig;
+    private final ReserveNearCache nearCache;
+    private final ISlotStockService slotStockService;
+    private final ITimeSlotMapper timeSlotMapper;
+    private final Map<Integer, SessionSlots> sessionSlots = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WaitingRoomServiceImpl(RedissonClient redisson, RedisScripts redisScripts,
+                                  ReserveWaitingRoomConfig waitingRoomConfig, ReserveNearCache nearCache,
+                                  ISlotStockService slotStockService, ITimeSlotMapper timeSlotMapper) {
+        this.redisson = redisson;
+        this.redisScripts = redisScripts;
+        this.waitingRoomConfig = waitingRoomConfig;
+        this.nearCache = nearCache;
+        this.slotStockService = slotStockService;
+        this.timeSlotMapper = timeSlotMapper;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(waitingRoomConfig.getEnabled());
+    }
+
+    @Override
+    public WaitingRoomVO enter(Integer userId, Integer sessionId) {
+        return evalEnter(userId, sessionId, true);
+    }
+
+    @Override
+    public WaitingRoomVO getStatus(Integer userId, Integer sessionId) {
+        return evalEnter(userId, sessionId, false);
+    }
+
+    private WaitingRoomVO evalEnter(Integer userId, Integer sessionId, boolean enqueue) {
+        if (!isEnabled()) {
+            return new WaitingRoomVO(sessionId, WaitingRoomStatus.ADMITTED, null, null);
+        }
+        // 随机排序时由调用方生成随机数，脚本内的 math.random 每次执行种子相同
+        String preGateScore = ORDER_FIFO.equalsIgnoreCase(waitingRoomConfig.getOrder())
+                ? "" : String.valueOf(ThreadLocalRandom.current().nextDouble());
+        List<Long> reply = redisScripts.evalSha(ENTER_SCRIPT, RScript.ReturnType.MULTI,
+                List.of(RedisKeys.gateTimeKey(sessionId), RedisKeys.waitAdmittedKey(sessionId),
+                        RedisKeys.waitQueueKey(sessionId), RedisKeys.waitSessionsKey()),
+                userId.toString(), enqueue ? "1" : "0", preGateScore, sessionId.toString(),
+                String.valueOf(DateTimes.ttlToEndOfTodaySeconds()));
+        return switch (reply.get(0).intValue()) {
+            case 1 -> new WaitingRoomVO(sessionId, WaitingRoomStatus.WAITING, reply.get(1), null);
+            case 2 -> new WaitingRoomVO(sessionId, WaitingRoomStatus.ADMITTED, null, reply.get(1));
+            case 0 -> new WaitingRoomVO(sessionId, WaitingRoomStatus.NOT_QUEUED, null, null);
+            default -> new WaitingRoomVO(sessionId, WaitingRoomStatus.NOT_OPEN, null, null);
+        };
+    }
+
+    @Override
+    public boolean isAdmitted(Integer userId, Integer sessionId) {
+        if (!isEnabled()) {
+            return true;
+        }
+        Double admittedUntil = redisson.getScoredSortedSet(RedisKeys.waitAdmittedKey(sessionId), StringCodec.INSTANCE)
+                .getScore(userId.toString());
+        return admittedUntil != null && admittedUntil > System.currentTimeMillis();
+    }
+
+    @Override
+    public Mono<Boolean> isAdmittedReactive(Integer userId, Integer sessionId) {
+        if (!isEnabled()) {
+            return Mono.just(true);
+        }
+        return redisson.reactive()
+                .<String>getScoredSortedSet(RedisKeys.waitAdmittedKey(sessionId), StringCodec.INSTANCE)
+                .getScore(userId.toString())
+                .map(admittedUntil -> admittedUntil > System.currentTimeMillis())
+                .defaultIfEmpty(false);
+    }
+
+    @Override
+    public void release(Integer userId, Integer sessionId) {
+        if (!isEnabled()) {
+            return;
+        }
+        // 收回失败只会让放行名额晚一点随过期释放，不影响抢占结果
+        redisson.getScoredSortedSet(RedisKeys.waitAdmittedKey(sessionId), StringCodec.INSTANCE)
+                .removeAsync(userId.toString());
+    }
+
+    @Override
+    public void admitWaves() {
+        if (!isEnabled()) {
+            return;
+        }
+        Set<String> sessionIds = redisson.<String>getSet(RedisKeys.waitSessionsKey(), StringCodec.INSTANCE).readAll();
+        for (String value : sessionIds) {
+            Integer sessionId;
+            try {
+                sessionId = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                log.warn("忽略无法解析的排队场次 sessionId={}", value);
+                continue;
+            }
+            if (!nearCache.isGateOpen(sessionId)) {
+                continue;
+            }
+            admitWave(sessionId);
+        }
+    }
+
+    /**
+     * 在途放行人数补足到 剩余库存 × 系数；已售罄时不放行，等超时取消回补库存后再放
+     */
+    private void admitWave(Integer sessionId) {
+        int remaining = remainingStock(sessionId);
+        long target = (long) Math.ceil(remaining * waitingRoomConfig.getAdmitFactor());
+        List<Long> reply = redisScripts.evalSha(ADMIT_SCRIPT, RScript.ReturnType.MULTI,
+                List.of(RedisKeys.waitAdmittedKey(sessionId), RedisKeys.waitQueueKey(sessionId),
+                        RedisKeys.waitSessionsKey()),
+                String.valueOf(target), String.valueOf(waitingRoomConfig.getAdmissionTtlSeconds() * 1000L),
+                String.valueOf(DateTimes.ttlToEndOfTodaySeconds()), sessionId.toString());
+        if (reply.get(0) > 0) {
+            log.info("等候室放行 sessionId={}, remaining={}, admitted={}, waiting={}",
+                    sessionId, remaining, reply.get(0), reply.get(1));
+        }
+    }
+
+    private int remainingStock(Integer sessionId) {
+        List<Integer> slotIds = slotIds(sessionId);
+        if (slotIds.isEmpty()) {
+            return 0;
+        }
+        return slotStockService.getRemaining(sessionId, slotIds).values().stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    /**
+     * 当天场次下的 slotId，放行每秒数次，按分钟从库里刷新
+     */
+    private List<Integer> slotIds(Integer sessionId) {
+        LocalDate today = DateTimes.nowDate();
+        long now = System.currentTimeMillis();
+        SessionSlots cached = sessionSlots.get(sessionId);
+        if (cached != null && cached.day().equals(today) && now - cached.loadedAt() < SLOT_IDS_REFRESH_MS) {
+            return cached.slotIds();
+        }
+        List<Integer> slotIds = timeSlotMapper.selectList(new LambdaQueryWrapper<TimeSlot>()
+                        .select(TimeSlot::getId)
+                        .eq(TimeSlot::getSessionId, sessionId)
+                        .eq(TimeSlot::getSlotDate, today))
+                .stream()
+                .map(TimeSlot::getId)
+                .toList();
+        sessionSlots.put(sessionId, new SessionSlots(today, slotIds, now));
+        return slotIds;
+    }
+
+    private record SessionSlots(LocalDate day, List<Integer> slotIds, long loadedAt) {
+    }
+}
@@ -0,0 +1,96 @@
+package shuhuai.badmintonflashbackend.utils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import shuhuai.badmintonflashbackend.config.PinningMonitorConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 虚拟线程 pinning 诊断
+ * 通过 JFR 事件流监听 jdk.VirtualThreadPinned（虚拟线程在 synchronized 块或本地方法中阻塞，占住载体线程），
+ * 按第一个非 JDK 栈帧归并热点：每个热点首次出现时打印调用栈，之后每 100 次打印一次累计次数。
+ */
+@Slf4j
+@Component
+public class PinningMonitor {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOG_EVERY = 100;
+    private static final int STACK_DEPTH = 12;
+
+    private final PinningMonitorConfig monitorConfig;
+    private final Map<String, LongAdder> hotspots = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+
+    public PinningMonitor(PinningMonitorConfig monitorConfig) {
+        this.monitorConfig = monitorConfig;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!Boolean.TRUE.equals(monitorConfig.getEnabled())) {
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT)
+                .withThreshold(Duration.ofMillis(monitorConfig.getThresholdMs()))
+                .withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("虚拟线程 pinning 诊断已开启，阈值 {} ms", monitorConfig.getThresholdMs());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * 各热点累计 pinning 次数
+     */
+    public Map<String, Long> hotspots() {
+        return hotspots.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().sum()));
+    }
+
+    private void onPinned(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace == null ? List.of() : stackTrace.getFrames();
+        String site = frames.stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .map(PinningMonitor::describe)
+                .filter(frame -> !frame.startsWith("java.") && !frame.startsWith("jdk."))
+                .findFirst()
+                .orElse("unknown");
+        LongAdder counter = hotspots.computeIfAbsent(site, k -> new LongAdder());
+        counter.increment();
+        long count = counter.sum();
+        if (count == 1) {
+            String stack = frames.stream()
+                    .limit(STACK_DEPTH)
+                    .map(frame -> "\n\tat " + describe(frame))
+                    .collect(Collectors.joining());
+            log.warn("虚拟线程 pinning {} ms, 热点 {}{}", event.getDuration().toMillis(), site, stack);
+        } else if (count % LOG_EVERY == 0) {
+            log.warn("虚拟线程 pinning 热点 {} 已累计 {} 次", site, count);
+        }
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,92 @@
+package shuhuai.badmintonflashbackend.utils;
+
+import org.redisson.api.RScript;
+import org.redisson.api.RScriptReactive;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lua 脚本执行器
+ * 脚本统一放在 classpath 的 lua/ 目录下，首次使用时 SCRIPT LOAD 并缓存 sha，之后走 EVALSHA；
+ * Redis 重启或执行 SCRIPT FLUSH 导致 NOSCRIPT 时自动重新加载一次。
+ * 脚本内读写的 key 统一使用 StringCodec 编码。
+ */
+@Component
+public class RedisScripts {
+    private static final String SCRIPT_DIR = "lua/";
+
+    private final RedissonClient redisson;
+    private final Map<String, String> sources = new ConcurrentHashMap<>();
+    private final Map<String, String> shas = new ConcurrentHashMap<>();
+
+    public RedisScripts(RedissonClient redisson) {
+        this.redisson = redisson;
+    }
+
+    /**
+     * 以 EVALSHA 执行脚本
+     *
+     * @param name       脚本文件名（不含目录），如 reserve.lua
+     * @param returnType 返回值类型
+     * @param keys       KEYS
+     * @param args       ARGV
+     * @return 脚本返回值
+     */
+    public <R> R evalSha(String name, RScript.ReturnType returnType, List<Object> keys, Object... args) {
+        RScript script = redisson.getScript(StringCodec.INSTANCE);
+        String sha = shas.computeIfAbsent(name, n -> script.scriptLoad(source(n)));
+        try {
+            return script.evalSha(RScript.Mode.READ_WRITE, sha, returnType, keys, args);
+        } catch (RedisException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("NOSCRIPT")) {
+                throw e;
+            }
+            sha = script.scriptLoad(source(name));
+            shas.put(name, sha);
+            return script.evalSha(RScript.Mode.READ_WRITE, sha, returnType, keys, args);
+        }
+    }
+
+    /**
+     * 以 EVALSHA 执行脚本，基于 Redisson 响应式客户端，不阻塞调用线程
+     * 回调运行在 Redisson 的 I/O 线程上，下游不得执行阻塞操作
+     */
+    public <R> Mono<R> evalShaReactive(String name, RScript.ReturnType returnType, List<Object> keys,
+                                       Object... args) {
+        RScriptReactive script = redisson.reactive().getScript(StringCodec.INSTANCE);
+        String cachedSha = shas.get(name);
+        Mono<String> sha = cachedSha != null ? Mono.just(cachedSha) : loadReactive(script, name);
+        return sha.flatMap(s -> script.<R>evalSha(RScript.Mode.READ_WRITE, s, returnType, keys, args))
+                .onErrorResume(e -> e instanceof RedisException && e.getMessage() != null
+                                && e.getMessage().contains("NOSCRIPT"),
+                        e -> loadReactive(script, name)
+                                .flatMap(s -> script.<R>evalSha(RScript.Mode.READ_WRITE, s, returnType, keys, args)));
+    }
+
+    private Mono<String> loadReactive(RScriptReactive script, String name) {
+        return script.scriptLoad(source(name)).doOnNext(sha -> shas.put(name, sha));
+    }
+
+    private String source(String name) {
+        return sources.computeIfAbsent(name, n -> {
+            try {
+                return StreamUtils.copyToString(new ClassPathResource(SCRIPT_DIR + n).getInputStream(),
+                        StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取 Lua 脚本失败: " + n, e);
+            }
+        });
+    }
+}
@@ -47,6 +47,21 @@ public class RequestGetter {
         return java.net.URLDecoder.decode(url, StandardCharsets.UTF_8);
     }
 
+    /**
+     * 获取客户端IP
+     * 只取连接对端地址；经可信反向代理转发时由 server.forward-headers-strategy=native（Tomcat RemoteIpValve）
+     * 按 server.tomcat.remoteip.internal-proxies 还原，客户端自带的 X-Forwarded-For 不会被采信
+     *
+     * @return 客户端IP，不在请求上下文中时返回null
+     */
+    public static String getClientIp() {
+        ServletRequestAttributes attributes = getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        return attributes.getRequest().getRemoteAddr();
+    }
+
     /**
      * 获取HttpSession对象
      *
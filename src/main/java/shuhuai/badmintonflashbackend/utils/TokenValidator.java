@@ -7,6 +7,8 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 import shuhuai.badmintonflashbackend.auth.RequireRole;
@@ -33,11 +35,11 @@ public class TokenValidator implements HandlerInterceptor {
     private static final String CLAIM_ISSUED_AT = "issuedAt";
     private static final String BEARER_PREFIX = "Bearer ";
     private final TokenConfig tokenConfig;
-    private final IUserService userService;
     /**
-     * 线程本地存储，用于存储用户信息
+     * 用户信息保存在请求属性上，随请求而非线程存在：虚拟线程下不额外占用线程本地存储，异步派发的后续线程也能取到
      */
-    private final static ThreadLocal<Map<String, String>> threadLocal = new ThreadLocal<>();
+    private static final String USER_ATTRIBUTE = TokenValidator.class.getName() + ".user";
+    private final IUserService userService;
 
     public TokenValidator(TokenConfig tokenConfig, IUserService userService) {
         this.tokenConfig = tokenConfig;
@@ -45,28 +47,37 @@ public class TokenValidator implements HandlerInterceptor {
     }
 
     /**
-     * 获取当前线程的用户信息
+     * 获取当前请求的用户信息
      *
-     * @return 用户信息映射
+     * @return 用户信息映射，不在请求上下文中时返回 null
      */
+    @SuppressWarnings("unchecked")
     public static Map<String, String> getUser() {
-        return threadLocal.get();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        return (Map<String, String>) attributes.getAttribute(USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
     }
 
     /**
-     * 设置当前线程的用户信息
+     * 设置当前请求的用户信息
      *
      * @param userIdentify 用户信息映射
      */
     public static void setUser(Map<String, String> userIdentify) {
-        threadLocal.set(userIdentify);
+        RequestContextHolder.currentRequestAttributes()
+                .setAttribute(USER_ATTRIBUTE, userIdentify, RequestAttributes.SCOPE_REQUEST);
     }
 
     /**
-     * 移除当前线程的用户信息
+     * 移除当前请求的用户信息
      */
     public static void removeUser() {
-        threadLocal.remove();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.removeAttribute(USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
     }
 
     /**
@@ -187,7 +198,7 @@ public class TokenValidator implements HandlerInterceptor {
         } else if (timeOfUse >= tokenConfig.getOldToken()) {
             throw new BaseException(ResponseCode.TOKEN_EXPIRED);
         }
-        setUser(map);
+        httpServletRequest.setAttribute(USER_ATTRIBUTE, map);
         return true;
     }
 
@@ -218,6 +229,6 @@ public class TokenValidator implements HandlerInterceptor {
                                 @NonNull HttpServletResponse response,
                                 @NonNull Object handler,
                                 Exception ex) {
-        removeUser();
+        request.removeAttribute(USER_ATTRIBUTE);
     }
 }
@@ -0,0 +1,49 @@
+-- 索引已存在时跳过（早期版本曾在建表语句中直接创建同名索引）
+
+-- 浏览 slot、余量视图、预热：按场次 + 日期
+set @ddl = (select if(count(*) = 0,
+                      'create index time_slot_session_date_idx on time_slot (session_id, slot_date)',
+                      'select 1')
+            from information_schema.statistics
+            where table_schema = database()
+              and table_name = 'time_slot'
+              and index_name = 'time_slot_session_date_idx');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+
+-- 用户预约记录游标分页：按用户 + 状态 + 创建时间
+set @ddl = (select if(count(*) = 0,
+                      'create index reservation_user_status_time_idx on reservation (user_id, status, create_time)',
+                      'select 1')
+            from information_schema.statistics
+            where table_schema = database()
+              and table_name = 'reservation'
+              and index_name = 'reservation_user_status_time_idx');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+
+-- 超时未支付兜底扫描：按状态 + 创建时间
+set @ddl = (select if(count(*) = 0,
+                      'create index reservation_status_time_idx on reservation (status, create_time)',
+                      'select 1')
+            from information_schema.statistics
+            where table_schema = database()
+              and table_name = 'reservation'
+              and index_name = 'reservation_status_time_idx');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+
+-- 关闭/查询预约对应的支付单：按预约 + 状态
+set @ddl = (select if(count(*) = 0,
+                      'create index pay_order_reservation_status_idx on pay_order (reservation_id, status)',
+                      'select 1')
+            from information_schema.statistics
+            where table_schema = database()
+              and table_name = 'pay_order'
+              and index_name = 'pay_order_reservation_status_idx');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
@@ -0,0 +1,47 @@
+-- 归档历史表：列与在线表一致，不带外键与业务唯一约束，只保留常用查询索引
+create table if not exists time_slot_history
+(
+    id          int                                  not null
+        primary key,
+    slot_date   date                                 not null,
+    start_time  time                                 not null,
+    end_time    time                                 not null,
+    court_id    int                                  not null,
+    session_id  int                                  not null,
+    create_time timestamp  default CURRENT_TIMESTAMP not null,
+    update_time timestamp  default CURRENT_TIMESTAMP not null,
+    is_active   tinyint(1) default 1                 not null,
+    index time_slot_history_session_date_idx (session_id, slot_date)
+);
+
+create table if not exists reservation_history
+(
+    id          int                                  not null
+        primary key,
+    user_id     int                                  not null,
+    slot_id     int                                  not null,
+    trace_id    varchar(64)                          null,
+    status      varchar(127)                         not null,
+    create_time timestamp  default CURRENT_TIMESTAMP not null,
+    update_time timestamp  default CURRENT_TIMESTAMP not null,
+    is_active   tinyint(1) default 1                 not null,
+    index reservation_history_user_time_idx (user_id, create_time),
+    index reservation_history_slot_idx (slot_id)
+);
+
+create table if not exists pay_order_history
+(
+    id             int                                  not null
+        primary key,
+    reservation_id int                                  not null,
+    out_trade_no   varchar(64)                          not null,
+    pay_channel    varchar(32)                          not null,
+    amount         decimal(10, 2)                       not null,
+    status         varchar(32)                          not null,
+    third_trade_no varchar(64)                          null,
+    expire_time    timestamp                            null,
+    create_time    timestamp  default CURRENT_TIMESTAMP not null,
+    update_time    timestamp  default CURRENT_TIMESTAMP not null,
+    is_active      tinyint(1) default 1                 not null,
+    index pay_order_history_reservation_idx (reservation_id)
+);
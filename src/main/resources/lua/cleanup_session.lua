@@ -0,0 +1,8 @@
+-- 清理 slot（按场次聚合的 key 布局）：删除库存与映射
+-- KEYS[1]=slotSessions(hash), KEYS[2]=sessionStock(hash)
+-- ARGV[1..]=slotId
+for i = 1, #ARGV do
+    redis.call('hdel', KEYS[1], ARGV[i])
+    redis.call('hdel', KEYS[2], ARGV[i])
+end
+return 1
@@ -0,0 +1,16 @@
+-- 调度 leader 租约：未被占用时抢占并签发新的 fencing token，本实例持有时续期
+-- KEYS[1]=leader（值为 token:instanceId），KEYS[2]=fencing token 计数器
+-- ARGV[1]=instanceId, ARGV[2]=租约毫秒
+-- 返回：本实例持有的 fencing token，被其他实例持有时返回 -1
+local current = redis.call('get', KEYS[1])
+if current then
+    local token, owner = string.match(current, '^(%d+):(.+)$')
+    if owner == ARGV[1] then
+        redis.call('pexpire', KEYS[1], ARGV[2])
+        return tonumber(token)
+    end
+    return -1
+end
+local token = redis.call('incr', KEYS[2])
+redis.call('set', KEYS[1], token .. ':' .. ARGV[1], 'PX', ARGV[2])
+return token
@@ -0,0 +1,7 @@
+-- 释放调度 leader 租约，只删除本实例持有的租约
+-- KEYS[1]=leader, ARGV[1]=token:instanceId
+-- 返回：1 已释放，0 未持有
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    return redis.call('del', KEYS[1])
+end
+return 0
@@ -0,0 +1,24 @@
+-- 抽签意向登记：开闸后窗口期内追加一条意向并写 pending，不扣库存，以 Redis 时间为准
+-- KEYS[1]=gate, KEYS[2]=开抢时间（秒）, KEYS[3]=意向 list, KEYS[4]=用户意向数 hash, KEYS[5]=有意向的场次 set, KEYS[6]=pending
+-- ARGV[1]=userId, ARGV[2]=意向（userId:slotId:traceId）, ARGV[3]=窗口秒数, ARGV[4]=每用户意向上限,
+-- ARGV[5]=sessionId, ARGV[6]=过期秒数, ARGV[7]=pending 值, ARGV[8]=pending 过期秒数
+-- 返回：1 成功，-1 未开闸，-2 登记窗口已结束，-3 意向数已达上限
+local gateTime = tonumber(redis.call('get', KEYS[2]))
+if redis.call('get', KEYS[1]) ~= '1' or not gateTime then
+    return -1
+end
+local time = redis.call('time')
+if tonumber(time[1]) >= gateTime + tonumber(ARGV[3]) then
+    return -2
+end
+if redis.call('hincrby', KEYS[4], ARGV[1], 1) > tonumber(ARGV[4]) then
+    redis.call('hincrby', KEYS[4], ARGV[1], -1)
+    return -3
+end
+redis.call('expire', KEYS[4], ARGV[6])
+redis.call('rpush', KEYS[3], ARGV[2])
+redis.call('expire', KEYS[3], ARGV[6])
+redis.call('sadd', KEYS[5], ARGV[5])
+redis.call('expire', KEYS[5], ARGV[6])
+redis.call('set', KEYS[6], ARGV[7], 'EX', ARGV[8])
+return 1
@@ -0,0 +1,20 @@
+-- 准点开闸：以 Redis 服务器时间判断是否到开抢时间，闸门 0 -> 1 只发生一次
+-- KEYS[1]=gate, KEYS[2]=gateTime（开抢 epoch 秒）
+-- ARGV[1]=闸门过期秒数
+-- 返回：{状态, 距开抢毫秒}，状态 1 本次开闸，0 已开闸，-1 未预热，-2 未到开抢时间
+local gate = redis.call('get', KEYS[1])
+if gate == '1' then
+    return {0, 0}
+end
+local startAt = tonumber(redis.call('get', KEYS[2]) or '')
+if not gate or not startAt then
+    return {-1, 0}
+end
+local time = redis.call('time')
+local nowMs = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local waitMs = startAt * 1000 - nowMs
+if waitMs > 0 then
+    return {-2, waitMs}
+end
+redis.call('set', KEYS[1], '1', 'EX', ARGV[1])
+return {1, 0}
@@ -0,0 +1,12 @@
+-- 原子弹出到期成员，多实例并发轮询时每个成员只会被一个实例取到
+-- KEYS[1]=zset, KEYS[2]=调度 fencing token 计数器
+-- ARGV[1]=最大 score（含），ARGV[2]=最多弹出数量，ARGV[3]=调用方持有的 fencing token
+-- token 不是最新签发的（已换主）时不弹出，返回空列表
+if redis.call('get', KEYS[2]) ~= ARGV[3] then
+    return {}
+end
+local members = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+if #members > 0 then
+    redis.call('zrem', KEYS[1], unpack(members))
+end
+return members
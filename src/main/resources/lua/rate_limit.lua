@@ -0,0 +1,28 @@
+-- 多维令牌桶：各桶按时间均匀补充，全部有令牌时才一起扣减，一次往返完成
+-- KEYS[i]=第 i 个桶（hash：tokens 剩余令牌，ts 上次补充时间毫秒）
+-- ARGV[2i-1]=第 i 个桶容量, ARGV[2i]=第 i 个桶补满周期毫秒
+-- 返回：0 放行；否则为第一个令牌不足的桶下标（从 1 开始），此时不扣减任何桶
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local tokens = {}
+for i, key in ipairs(KEYS) do
+    local capacity = tonumber(ARGV[2 * i - 1])
+    local period = tonumber(ARGV[2 * i])
+    local state = redis.call('hmget', key, 'tokens', 'ts')
+    local current = tonumber(state[1])
+    local ts = tonumber(state[2])
+    if current == nil or ts == nil then
+        current = capacity
+    elseif now > ts then
+        current = math.min(capacity, current + (now - ts) * capacity / period)
+    end
+    if current < 1 then
+        return i
+    end
+    tokens[i] = current
+end
+for i, key in ipairs(KEYS) do
+    redis.call('hset', key, 'tokens', tostring(tokens[i] - 1), 'ts', now)
+    redis.call('pexpire', key, ARGV[2 * i])
+end
+return 0
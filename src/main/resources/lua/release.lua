@@ -0,0 +1,12 @@
+-- 回补场次配额与库存（每 slot 独立 key 布局）
+-- KEYS[1]=userDedup(hash), KEYS[2]=sem
+-- ARGV[1]=userId
+-- 返回：1 已归还库存，0 库存不存在（已过期或已清理）
+if redis.call('hincrby', KEYS[1], ARGV[1], -1) <= 0 then
+    redis.call('hdel', KEYS[1], ARGV[1])
+end
+if redis.call('exists', KEYS[2]) == 0 then
+    return 0
+end
+redis.call('incr', KEYS[2])
+return 1
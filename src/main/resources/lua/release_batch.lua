@@ -0,0 +1,17 @@
+-- 批量回补场次配额与库存（每 slot 独立 key 布局）
+-- KEYS 每条依次 2 个：userDedup(hash), sem
+-- ARGV 每条 1 个：userId
+-- 返回：已归还库存的条目序号（从 1 开始），库存 key 不存在的条目不回补
+local released = {}
+for i = 1, #ARGV do
+    local dedupKey = KEYS[i * 2 - 1]
+    local semKey = KEYS[i * 2]
+    if redis.call('hincrby', dedupKey, ARGV[i], -1) <= 0 then
+        redis.call('hdel', dedupKey, ARGV[i])
+    end
+    if redis.call('exists', semKey) == 1 then
+        redis.call('incr', semKey)
+        table.insert(released, i)
+    end
+end
+return released
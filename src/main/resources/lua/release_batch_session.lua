@@ -0,0 +1,19 @@
+-- 批量回补场次配额与库存（按场次聚合的 key 布局）
+-- KEYS 每条依次 2 个：sessionStock(hash), userDedup(hash)
+-- ARGV 每条依次 2 个：slotId, userId
+-- 返回：已归还库存的条目序号（从 1 开始），库存不存在的条目不回补
+local released = {}
+for i = 1, #KEYS / 2 do
+    local stockKey = KEYS[i * 2 - 1]
+    local dedupKey = KEYS[i * 2]
+    local slotId = ARGV[i * 2 - 1]
+    local userId = ARGV[i * 2]
+    if redis.call('hincrby', dedupKey, userId, -1) <= 0 then
+        redis.call('hdel', dedupKey, userId)
+    end
+    if redis.call('hexists', stockKey, slotId) == 1 then
+        redis.call('hincrby', stockKey, slotId, 1)
+        table.insert(released, i)
+    end
+end
+return released
@@ -0,0 +1,12 @@
+-- 回补场次配额与库存（按场次聚合的 key 布局）
+-- KEYS[1]=sessionStock(hash), KEYS[2]=userDedup(hash)
+-- ARGV[1]=slotId, ARGV[2]=userId
+-- 返回：1 已归还库存，0 库存不存在（已过期或已清理）
+if redis.call('hincrby', KEYS[2], ARGV[2], -1) <= 0 then
+    redis.call('hdel', KEYS[2], ARGV[2])
+end
+if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then
+    return 0
+end
+redis.call('hincrby', KEYS[1], ARGV[1], 1)
+return 1
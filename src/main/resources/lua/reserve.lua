@@ -0,0 +1,30 @@
+-- 原子抢占：开闸 -> slot 归属 -> 场次配额 -> 扣库存 -> 写 pending，一次往返完成
+-- KEYS[1]=gate, KEYS[2]=slotSession, KEYS[3]=userDedup(hash), KEYS[4]=sem, KEYS[5]=pending
+-- ARGV[1]=userId, ARGV[2]=sessionId, ARGV[3]=pendingValue, ARGV[4]=pendingTtlSeconds, ARGV[5]=每用户每场次配额, ARGV[6]=userDedup 过期秒数
+-- 返回：1 成功，-1 未开闸，-2 slot 未预热，-3 slot 不属于该 session，-4 已达场次配额，-5 库存不足
+if redis.call('get', KEYS[1]) ~= '1' then
+    return -1
+end
+local cachedSessionId = redis.call('get', KEYS[2])
+if not cachedSessionId then
+    return -2
+end
+if cachedSessionId ~= ARGV[2] then
+    return -3
+end
+local used = tonumber(redis.call('hget', KEYS[3], ARGV[1]) or '0')
+if used >= tonumber(ARGV[5]) then
+    return -4
+end
+-- sem 与 RSemaphore 同构（数值字符串），直接 decr 即等价于 tryAcquire
+local permits = tonumber(redis.call('get', KEYS[4]) or '0')
+if permits <= 0 then
+    return -5
+end
+redis.call('decr', KEYS[4])
+redis.call('hincrby', KEYS[3], ARGV[1], 1)
+if redis.call('ttl', KEYS[3]) == -1 then
+    redis.call('expire', KEYS[3], ARGV[6])
+end
+redis.call('set', KEYS[5], ARGV[3], 'EX', ARGV[4])
+return 1
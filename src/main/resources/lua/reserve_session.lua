@@ -0,0 +1,30 @@
+-- 原子抢占（按场次聚合的 key 布局）：开闸 -> slot 归属 -> 场次配额 -> 扣库存 -> 写 pending
+-- KEYS[1]=gate, KEYS[2]=slotSessions(hash), KEYS[3]=sessionStock(hash), KEYS[4]=userDedup(hash), KEYS[5]=pending
+-- ARGV[1]=userId, ARGV[2]=sessionId, ARGV[3]=slotId, ARGV[4]=pendingValue, ARGV[5]=pendingTtlSeconds,
+-- ARGV[6]=每用户每场次配额, ARGV[7]=userDedup 过期秒数
+-- 返回：1 成功，-1 未开闸，-2 slot 未预热，-3 slot 不属于该 session，-4 已达场次配额，-5 库存不足
+if redis.call('get', KEYS[1]) ~= '1' then
+    return -1
+end
+local permits = redis.call('hget', KEYS[3], ARGV[3])
+if not permits then
+    -- 本场次库存里没有该 slot：区分未预热与串场
+    if redis.call('hexists', KEYS[2], ARGV[3]) == 1 then
+        return -3
+    end
+    return -2
+end
+local used = tonumber(redis.call('hget', KEYS[4], ARGV[1]) or '0')
+if used >= tonumber(ARGV[6]) then
+    return -4
+end
+if tonumber(permits) <= 0 then
+    return -5
+end
+redis.call('hincrby', KEYS[3], ARGV[3], -1)
+redis.call('hincrby', KEYS[4], ARGV[1], 1)
+if redis.call('ttl', KEYS[4]) == -1 then
+    redis.call('expire', KEYS[4], ARGV[7])
+end
+redis.call('set', KEYS[5], ARGV[4], 'EX', ARGV[5])
+return 1
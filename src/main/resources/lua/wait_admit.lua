@@ -0,0 +1,25 @@
+-- 等候室放行一批：清理过期放行，按目标在途人数补足放行，队列空时把场次移出排队集合
+-- KEYS[1]=放行 zset, KEYS[2]=排队 zset, KEYS[3]=有排队的场次 set
+-- ARGV[1]=目标在途放行人数, ARGV[2]=放行有效毫秒, ARGV[3]=过期秒数, ARGV[4]=sessionId
+-- 返回：{本次放行人数, 剩余排队人数}
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+redis.call('zremrangebyscore', KEYS[1], '-inf', now)
+local quota = tonumber(ARGV[1]) - redis.call('zcard', KEYS[1])
+local admitted = 0
+if quota > 0 then
+    local popped = redis.call('zpopmin', KEYS[2], quota)
+    local expireAt = now + tonumber(ARGV[2])
+    for i = 1, #popped, 2 do
+        redis.call('zadd', KEYS[1], expireAt, popped[i])
+    end
+    admitted = #popped / 2
+    if admitted > 0 then
+        redis.call('expire', KEYS[1], ARGV[3])
+    end
+end
+local waiting = redis.call('zcard', KEYS[2])
+if waiting == 0 then
+    redis.call('srem', KEYS[3], ARGV[4])
+end
+return {admitted, waiting}
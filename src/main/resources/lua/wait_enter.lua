@@ -0,0 +1,32 @@
+-- 等候室入队/查询，以 Redis 时间为准
+-- KEYS[1]=开抢时间（秒）, KEYS[2]=放行 zset（member=userId, score=放行截止毫秒）, KEYS[3]=排队 zset, KEYS[4]=有排队的场次 set
+-- ARGV[1]=userId, ARGV[2]=1 入队 / 0 只查询, ARGV[3]=开抢前入队的 score（随机排序时为 [0,1) 随机数，先到先得时为空串）,
+-- ARGV[4]=sessionId, ARGV[5]=过期秒数
+-- 返回：{-1, 0} 场次未预热，{0, 0} 未排队，{1, 排名} 排队中（从 1 开始），{2, 放行截止毫秒} 已放行
+local gateTime = redis.call('get', KEYS[1])
+if not gateTime then
+    return {-1, 0}
+end
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local admittedUntil = tonumber(redis.call('zscore', KEYS[2], ARGV[1]))
+if admittedUntil and admittedUntil > now then
+    return {2, admittedUntil}
+end
+local rank = redis.call('zrank', KEYS[3], ARGV[1])
+if rank then
+    return {1, rank + 1}
+end
+if ARGV[2] ~= '1' then
+    return {0, 0}
+end
+-- 开抢前入队的按随机数排在开抢后入队的之前，开抢后按到达时间排队
+local score = now
+if ARGV[3] ~= '' and now < tonumber(gateTime) * 1000 then
+    score = tonumber(ARGV[3])
+end
+redis.call('zadd', KEYS[3], score, ARGV[1])
+redis.call('expire', KEYS[3], ARGV[5])
+redis.call('sadd', KEYS[4], ARGV[4])
+redis.call('expire', KEYS[4], ARGV[5])
+return {1, redis.call('zrank', KEYS[3], ARGV[1]) + 1}
@@ -0,0 +1,46 @@
+-- 场次预热：一次往返初始化并校验该场次所有 slot 的 key，可重复执行
+-- KEYS[1]=gate, KEYS[2]=gateTime, KEYS[3]=sessionDone
+-- 之后每个 slot 依次 3 个 key：slotSession, sem, warmFlag
+-- ARGV[1]=sessionId, ARGV[2]=ttlSeconds, ARGV[3]=开抢 epoch 秒, ARGV[4]=每个 slot 的库存, ARGV[5]=1 时只校验不写入
+-- 返回：{gate 是否本次新建, 场次是否预热完成, 已归属其他场次的 slot 序号（从 1 开始）...}
+local sessionId = ARGV[1]
+local ttl = tonumber(ARGV[2])
+local checkOnly = ARGV[5] == '1'
+local result = {0, 0}
+local complete = 1
+
+local slotCount = (#KEYS - 3) / 3
+for i = 1, slotCount do
+    local base = 3 + (i - 1) * 3
+    local slotSessionKey = KEYS[base + 1]
+    local semKey = KEYS[base + 2]
+    local warmKey = KEYS[base + 3]
+    if not checkOnly then
+        redis.call('set', slotSessionKey, sessionId, 'EX', ttl, 'NX')
+        -- sem 与 RSemaphore 同构（数值字符串），不存在时才初始化，避免覆盖已扣减的库存
+        redis.call('set', semKey, ARGV[4], 'NX')
+        redis.call('expire', semKey, ttl)
+        redis.call('set', warmKey, '1', 'EX', ttl)
+    end
+    if redis.call('get', slotSessionKey) ~= sessionId then
+        complete = 0
+        table.insert(result, i)
+    elseif redis.call('exists', semKey, warmKey) < 2 then
+        complete = 0
+    end
+end
+
+if not checkOnly then
+    if redis.call('set', KEYS[1], '0', 'EX', ttl, 'NX') then
+        result[1] = 1
+    end
+    redis.call('set', KEYS[2], ARGV[3], 'EX', ttl)
+end
+if redis.call('exists', KEYS[1], KEYS[2]) < 2 then
+    complete = 0
+end
+if complete == 1 and not checkOnly then
+    redis.call('set', KEYS[3], '1', 'EX', ttl)
+end
+result[2] = complete
+return result
@@ -0,0 +1,49 @@
+-- 场次预热（按场次聚合的 key 布局）：一次往返初始化并校验该场次所有 slot，可重复执行
+-- KEYS[1]=gate, KEYS[2]=gateTime, KEYS[3]=sessionDone, KEYS[4]=slotSessions(hash), KEYS[5]=sessionStock(hash)
+-- ARGV[1]=sessionId, ARGV[2]=ttlSeconds, ARGV[3]=开抢 epoch 秒, ARGV[4]=每个 slot 的库存, ARGV[5]=1 时只校验不写入, ARGV[6..]=slotId
+-- 返回：{gate 是否本次新建, 场次是否预热完成, 已归属其他场次的 slot 序号（从 1 开始）...}
+local sessionId = ARGV[1]
+local ttl = tonumber(ARGV[2])
+local checkOnly = ARGV[5] == '1'
+local result = {0, 0}
+local complete = 1
+
+for i = 6, #ARGV do
+    local slotId = ARGV[i]
+    local owner = redis.call('hget', KEYS[4], slotId)
+    if not owner and not checkOnly then
+        redis.call('hset', KEYS[4], slotId, sessionId)
+        owner = sessionId
+    end
+    if owner ~= sessionId then
+        complete = 0
+        if owner then
+            table.insert(result, i - 5)
+        end
+    else
+        -- 不存在时才初始化，避免覆盖已扣减的库存
+        if not checkOnly then
+            redis.call('hsetnx', KEYS[5], slotId, ARGV[4])
+        end
+        if redis.call('hexists', KEYS[5], slotId) == 0 then
+            complete = 0
+        end
+    end
+end
+
+if not checkOnly then
+    redis.call('expire', KEYS[4], ttl)
+    redis.call('expire', KEYS[5], ttl)
+    if redis.call('set', KEYS[1], '0', 'EX', ttl, 'NX') then
+        result[1] = 1
+    end
+    redis.call('set', KEYS[2], ARGV[3], 'EX', ttl)
+end
+if redis.call('exists', KEYS[1], KEYS[2]) < 2 then
+    complete = 0
+end
+if complete == 1 and not checkOnly then
+    redis.call('set', KEYS[3], '1', 'EX', ttl)
+end
+result[2] = complete
+return result